@@ -20,6 +20,8 @@ import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
+import org.mal_lang.compiler.lib.ASTCache;
+import org.mal_lang.compiler.lib.OutputDirectory;
 
 public abstract class MalMojo extends AbstractMojo {
   /** The current Maven project. */
@@ -44,6 +46,21 @@ public abstract class MalMojo extends AbstractMojo {
   @Parameter(property = "mal.file", required = true)
   protected String file;
 
+  /** The directory where parsed MAL specifications are cached between builds. */
+  @Parameter(property = "mal.cache", defaultValue = "${project.build.directory}/mal-cache")
+  private File cacheDirectory;
+
+  /** Specifies if parsed MAL specifications should be cached between builds. */
+  @Parameter(property = "mal.useCache", defaultValue = "true")
+  private boolean useCache;
+
+  /**
+   * Specifies if the code generator should only rewrite generated files whose content changed,
+   * instead of clearing the output directory before every build.
+   */
+  @Parameter(property = "mal.incremental", defaultValue = "true")
+  protected boolean incremental;
+
   /** Specifies if the code generator should print verbose information. */
   @Parameter(property = "mal.verbose", defaultValue = "false")
   protected boolean verbose;
@@ -67,6 +84,10 @@ public abstract class MalMojo extends AbstractMojo {
     return resourceDirectory;
   }
 
+  protected ASTCache getCache() {
+    return useCache ? new ASTCache(cacheDirectory) : null;
+  }
+
   protected void validateFileExists(File path) throws MojoExecutionException {
     if (!path.exists()) {
       throw new MojoExecutionException(
@@ -139,4 +160,17 @@ public abstract class MalMojo extends AbstractMojo {
       }
     }
   }
+
+  /**
+   * Prepares {@code path} as output directory of a code generator. The directory is cleared unless
+   * it holds the output of a previous incremental build, in which case the code generator itself
+   * removes stale files.
+   */
+  protected void prepareOutputDirectory(File path) throws MojoExecutionException {
+    if (incremental && OutputDirectory.hasManifest(path)) {
+      validateFileIsDirectory(path);
+    } else {
+      createOrClearDirectory(path);
+    }
+  }
 }
@@ -54,7 +54,7 @@ public class ReferenceMojo extends MalMojo {
     if (path == null) {
       path = new File(getBuildDirectory(), "generated-test-sources");
     }
-    createOrClearDirectory(path);
+    prepareOutputDirectory(path);
 
     // Create argument map for code generator
     var args = new HashMap<String, String>();
@@ -65,11 +65,12 @@ public class ReferenceMojo extends MalMojo {
     }
 
     args.put("core", String.valueOf(core));
+    args.put("incremental", String.valueOf(incremental));
 
     // Generate code
     log.info(String.format("Compiling MAL specification %s", input.getPath()));
     try {
-      var ast = Parser.parse(input);
+      var ast = Parser.parse(input, getCache());
       Analyzer.analyze(ast);
       var lang = LangConverter.convert(ast);
       Generator.generate(lang, args, verbose, debug);
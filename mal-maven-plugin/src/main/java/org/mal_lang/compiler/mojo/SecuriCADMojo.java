@@ -57,7 +57,7 @@ public class SecuriCADMojo extends MalMojo {
     if (path == null) {
       path = new File(getBuildDirectory(), "generated-sources");
     }
-    createOrClearDirectory(path);
+    prepareOutputDirectory(path);
 
     // Create argument map for code generator
     var args = new HashMap<String, String>();
@@ -79,11 +79,12 @@ public class SecuriCADMojo extends MalMojo {
     }
 
     args.put("debug", Boolean.toString(keepDebugSteps));
+    args.put("incremental", Boolean.toString(incremental));
 
     // Generate code
     log.info(String.format("Compiling MAL specification %s", input.getPath()));
     try {
-      var ast = Parser.parse(input);
+      var ast = Parser.parse(input, getCache());
       Analyzer.analyze(ast);
       var lang = LangConverter.convert(ast);
       Generator.generate(lang, args, verbose, debug);
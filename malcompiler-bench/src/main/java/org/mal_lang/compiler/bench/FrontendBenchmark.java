@@ -0,0 +1,91 @@
+/*
+ * Copyright 2019 Foreseeti AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mal_lang.compiler.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.mal_lang.compiler.lib.AST;
+import org.mal_lang.compiler.lib.Analyzer;
+import org.mal_lang.compiler.lib.CompilerException;
+import org.mal_lang.compiler.lib.Lang;
+import org.mal_lang.compiler.lib.LangConverter;
+import org.mal_lang.compiler.lib.Lexer;
+import org.mal_lang.compiler.lib.Parser;
+import org.mal_lang.compiler.lib.TokenType;
+import org.mal_lang.formatter.Formatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of the stages from a MAL specification to a {@link Lang}, and of the formatter. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dfile.encoding=UTF-8")
+public class FrontendBenchmark {
+  @State(Scope.Benchmark)
+  public static class Parsed {
+    public AST ast;
+
+    @Setup(Level.Trial)
+    public void setUp(Inputs inputs) throws IOException, CompilerException {
+      ast = Parser.parse(inputs.file);
+      Analyzer.analyze(ast);
+    }
+  }
+
+  /** Lexes the main file of the specification, without following includes. */
+  @Benchmark
+  public int lex(Inputs inputs) throws IOException, CompilerException {
+    var lexer = new Lexer(inputs.file);
+    int tokens = 0;
+    while (lexer.next().type != TokenType.EOF) {
+      tokens++;
+    }
+    return tokens;
+  }
+
+  @Benchmark
+  public AST parse(Inputs inputs) throws IOException, CompilerException {
+    return Parser.parse(inputs.file);
+  }
+
+  @Benchmark
+  public AST analyze(Parsed parsed) throws CompilerException {
+    Analyzer.analyze(parsed.ast);
+    return parsed.ast;
+  }
+
+  @Benchmark
+  public Lang convert(Parsed parsed) {
+    return LangConverter.convert(parsed.ast);
+  }
+
+  /** Formats the main file of the specification. */
+  @Benchmark
+  public String format(Inputs inputs) throws IOException, CompilerException {
+    return Formatter.format(inputs.file, 100, false);
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2019 Foreseeti AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mal_lang.compiler.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.mal_lang.compiler.lib.AST;
+import org.mal_lang.compiler.lib.Analyzer;
+import org.mal_lang.compiler.lib.CompilerException;
+import org.mal_lang.compiler.lib.Lang;
+import org.mal_lang.compiler.lib.LangConverter;
+import org.mal_lang.compiler.lib.Parser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the code generators. Every invocation gets a {@link Lang} of its own, since the
+ * securiCAD generator modifies it, and an empty output directory.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dfile.encoding=UTF-8")
+public class GeneratorBenchmark {
+  @State(Scope.Thread)
+  public static class Output {
+    private AST ast;
+    public Lang lang;
+    public Path directory;
+
+    @Setup(Level.Trial)
+    public void setUpTrial(Inputs inputs) throws IOException, CompilerException {
+      ast = Parser.parse(inputs.file);
+      Analyzer.analyze(ast);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUp() throws IOException {
+      lang = LangConverter.convert(ast);
+      directory = Files.createTempDirectory("mal-bench-output");
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() throws IOException {
+      Inputs.delete(directory);
+    }
+
+    public Map<String, String> args() {
+      return Map.of("path", directory.toString(), "package", "lang");
+    }
+  }
+
+  @Benchmark
+  public void reference(Output output) throws IOException, CompilerException {
+    org.mal_lang.compiler.lib.reference.Generator.generate(output.lang, output.args());
+  }
+
+  @Benchmark
+  public void securicad(Output output) throws IOException, CompilerException {
+    org.mal_lang.compiler.lib.securicad.Generator.generate(output.lang, output.args());
+  }
+
+  @Benchmark
+  public void d3(Output output) throws IOException, CompilerException {
+    org.mal_lang.compiler.lib.d3.Generator.generate(output.lang, output.args());
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2019 Foreseeti AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mal_lang.compiler.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * The MAL specification a benchmark compiles. The specifications in the test resources are copied
+ * to a temporary directory, and synthetic specifications are generated there, before each trial.
+ *
+ * <p>The output of the compiler is discarded, as warnings would otherwise be printed on every
+ * invocation.
+ */
+@State(Scope.Benchmark)
+public class Inputs {
+  private static final String SYNTHETIC = "synthetic-";
+  private static final Map<String, List<String>> RESOURCES =
+      Map.of(
+          "vehiclelang",
+          List.of(
+              "vehiclelang/vehicleLang.mal",
+              "vehiclelang/vehicleLangEncryption.mal",
+              "vehiclelang/vehicleLangEthernet.mal",
+              "vehiclelang/vehicleLangPublicInterfaces.mal"),
+          "all-features",
+          List.of(
+              "all-features/all-features.mal",
+              "all-features/core.mal",
+              "all-features/included.mal",
+              "all-features/subdir/subincluded.mal"));
+
+  @Param({"vehiclelang", "all-features", "synthetic-100", "synthetic-1000"})
+  public String input;
+
+  /** The main file of the specification. */
+  public File file;
+
+  private Path directory;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    var discard = new PrintStream(OutputStream.nullOutputStream());
+    System.setOut(discard);
+    System.setErr(discard);
+    directory = Files.createTempDirectory("mal-bench");
+    if (input.startsWith(SYNTHETIC)) {
+      int assets = Integer.parseInt(input.substring(SYNTHETIC.length()));
+      var path = directory.resolve(String.format("%s.mal", input));
+      Files.writeString(path, new SyntheticLang().assets(assets).generate());
+      file = path.toFile();
+    } else if (RESOURCES.containsKey(input)) {
+      var resources = RESOURCES.get(input);
+      for (var resource : resources) {
+        var path = directory.resolve(resource);
+        Files.createDirectories(path.getParent());
+        try (var in = Inputs.class.getResourceAsStream(String.format("/%s", resource))) {
+          if (in == null) {
+            throw new IOException(String.format("Couldn't get resource %s", resource));
+          }
+          Files.copy(in, path);
+        }
+      }
+      file = directory.resolve(resources.get(0)).toFile();
+    } else {
+      throw new IllegalArgumentException(String.format("Unknown input '%s'", input));
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    delete(directory);
+  }
+
+  /** Deletes {@code path} and everything below it. */
+  static void delete(Path path) throws IOException {
+    try (var paths = Files.walk(path)) {
+      for (var p : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(p);
+      }
+    }
+  }
+}
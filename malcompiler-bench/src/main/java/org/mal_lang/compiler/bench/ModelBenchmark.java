@@ -0,0 +1,144 @@
+/*
+ * Copyright 2019 Foreseeti AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mal_lang.compiler.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.mal_lang.compiler.lib.Analyzer;
+import org.mal_lang.compiler.lib.CompilerException;
+import org.mal_lang.compiler.lib.LangConverter;
+import org.mal_lang.compiler.lib.Parser;
+import org.mal_lang.compiler.lib.reference.Generator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the reference runtime on instance models of a {@link SyntheticLang}. The language
+ * is compiled in memory with {@link Generator#compile}, and its core package resolves JUnit and
+ * reflections against the class path of the benchmarks.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Dfile.encoding=UTF-8", "-Xmx8g"})
+public class ModelBenchmark {
+  private static final String PACKAGE = "synthetic";
+
+  @State(Scope.Benchmark)
+  public static class Compiled {
+    /** The number of asset instances, each with 5.5 attack steps on average. */
+    @Param({"10000", "200000", "1000000"})
+    public int instances;
+
+    public SyntheticModel model;
+    public ClassLoader classLoader;
+    private Object context;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, CompilerException, ReflectiveOperationException {
+      var discard = new PrintStream(OutputStream.nullOutputStream());
+      System.setOut(discard);
+      System.setErr(discard);
+      var lang = new SyntheticLang();
+      var file = Files.createTempFile("synthetic", ".mal");
+      try {
+        Files.writeString(file, lang.generate());
+        var ast = Parser.parse(file.toFile());
+        Analyzer.analyze(ast);
+        classLoader =
+            Generator.compile(
+                LangConverter.convert(ast),
+                Map.of("package", PACKAGE),
+                ModelBenchmark.class.getClassLoader());
+      } finally {
+        Files.delete(file);
+      }
+      model = new SyntheticModel(lang, classLoader, PACKAGE);
+      var contextClass = classLoader.loadClass("core.ModelContext");
+      context = contextClass.getMethod("defaultContext").invoke(null);
+      contextClass.getField("recordParents").set(context, false);
+    }
+
+    /** Removes all model elements from the context models are built in. */
+    public void clear() throws ReflectiveOperationException {
+      context.getClass().getMethod("clear").invoke(context);
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class Built {
+    private Compiled compiled;
+    private Object attacker;
+    private Method attack;
+    private Properties profile;
+
+    @Setup(Level.Trial)
+    public void setUp(Compiled compiled) throws IOException, ReflectiveOperationException {
+      this.compiled = compiled;
+      compiled.model.build(compiled.instances, 0);
+      profile = new Properties();
+      try (var in = compiled.classLoader.getResourceAsStream("attackerProfile.ttc")) {
+        profile.load(in);
+      }
+      var attackerClass = compiled.classLoader.loadClass("core.Attacker");
+      attacker = attackerClass.getConstructor().newInstance();
+      attackerClass.getMethod("addRandomAttackPoint", long.class).invoke(attacker, 0L);
+      attack = attackerClass.getMethod("attack", Properties.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws ReflectiveOperationException {
+      compiled.clear();
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class Empty {
+    @TearDown(Level.Invocation)
+    public void tearDown(Compiled compiled) throws ReflectiveOperationException {
+      compiled.clear();
+    }
+  }
+
+  @Benchmark
+  public List<Object> build(Compiled compiled, Empty empty) throws ReflectiveOperationException {
+    return compiled.model.build(compiled.instances, 0);
+  }
+
+  @Benchmark
+  public void attack(Built built) throws ReflectiveOperationException {
+    built.attack.invoke(built.attacker, built.profile);
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2019 Foreseeti AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mal_lang.compiler.bench;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Generates MAL specifications of a given shape. The same settings always give the same
+ * specification.
+ *
+ * <p>Assets {@code A0}, {@code A1}, ... form inheritance chains of {@link #depth(int)} assets,
+ * where every asset extends the previous one. Every asset has {@link #fanOut(int)} fields {@code
+ * out<j>} to random assets, with the opposite fields {@code in<j>}. Chain roots define the attack
+ * steps {@code access}, {@code compromise} and the defense {@code defended}. {@code access} of
+ * every asset reaches {@code access} through each of its own fields, and {@code compromise}
+ * through each of its variables. Variables go back and forth over a field, e.g. {@code out3.in3}.
+ * Transitive steps are reached from {@code access} and reach {@code compromise} through {@code
+ * down<i>*}, where {@code down<i>} is a field from {@code A<i>} to itself.
+ */
+public final class SyntheticLang {
+  private long seed = 0;
+  private int assets = 100;
+  private int depth = 4;
+  private int fanOut = 2;
+  private int variables = 1;
+  private int transitive = 1;
+
+  public SyntheticLang seed(long seed) {
+    this.seed = seed;
+    return this;
+  }
+
+  public SyntheticLang assets(int assets) {
+    if (assets < 1) {
+      throw new IllegalArgumentException("assets must be at least 1");
+    }
+    this.assets = assets;
+    return this;
+  }
+
+  /** Sets the length of the inheritance chains, 1 meaning no inheritance. */
+  public SyntheticLang depth(int depth) {
+    if (depth < 1) {
+      throw new IllegalArgumentException("depth must be at least 1");
+    }
+    this.depth = depth;
+    return this;
+  }
+
+  /** Sets the number of associations every asset is the left side of. */
+  public SyntheticLang fanOut(int fanOut) {
+    if (fanOut < 0) {
+      throw new IllegalArgumentException("fanOut must not be negative");
+    }
+    this.fanOut = fanOut;
+    return this;
+  }
+
+  /** Sets the number of variables of every asset. Ignored if the fan-out is 0. */
+  public SyntheticLang variables(int variables) {
+    if (variables < 0) {
+      throw new IllegalArgumentException("variables must not be negative");
+    }
+    this.variables = variables;
+    return this;
+  }
+
+  /** Sets the number of transitive attack steps of every asset. */
+  public SyntheticLang transitive(int transitive) {
+    if (transitive < 0) {
+      throw new IllegalArgumentException("transitive must not be negative");
+    }
+    this.transitive = transitive;
+    return this;
+  }
+
+  public int getAssets() {
+    return assets;
+  }
+
+  public int getFanOut() {
+    return fanOut;
+  }
+
+  public int getTransitive() {
+    return transitive;
+  }
+
+  /** Returns the asset that {@code asset} extends, or -1 if it extends no asset. */
+  public int getSuperAsset(int asset) {
+    return asset % depth == 0 ? -1 : asset - 1;
+  }
+
+  /** Returns true if {@code asset} is {@code other} or extends it, directly or indirectly. */
+  public boolean isSubTypeOf(int asset, int other) {
+    return asset / depth == other / depth && asset >= other;
+  }
+
+  /** Returns the number of attack steps, including inherited ones, of an instance of asset. */
+  public int getAttackSteps(int asset) {
+    return 3 + transitive * (asset % depth + 1);
+  }
+
+  /**
+   * Returns the target asset of every field {@code out<j>}, indexed by {@code j}. The fields of
+   * asset {@code i} are {@code out<i * fanOut>} to {@code out<i * fanOut + fanOut - 1>}.
+   */
+  public int[] getTargets() {
+    var random = new Random(seed);
+    var targets = new int[assets * fanOut];
+    for (int j = 0; j < targets.length; j++) {
+      targets[j] = random.nextInt(assets);
+    }
+    return targets;
+  }
+
+  public String generate() {
+    var targets = getTargets();
+    var sb = new StringBuilder();
+    sb.append(String.format("#id: \"synthetic\"%n"));
+    sb.append(String.format("#version: \"1.0.0\"%n%n"));
+    sb.append(String.format("category Synthetic {%n"));
+    for (int i = 0; i < assets; i++) {
+      boolean root = getSuperAsset(i) == -1;
+      if (root) {
+        sb.append(String.format("  asset A%d {%n", i));
+      } else {
+        sb.append(String.format("  asset A%d extends A%d {%n", i, getSuperAsset(i)));
+      }
+      var reaches = new ArrayList<String>();
+      if (root) {
+        reaches.add("compromise");
+      }
+      for (int k = 0; k < fanOut; k++) {
+        reaches.add(String.format("out%d.access", i * fanOut + k));
+      }
+      if (fanOut > 0) {
+        for (int k = 0; k < variables; k++) {
+          int j = i * fanOut + k % fanOut;
+          sb.append(String.format("    let v%dx%d = out%d.in%d%n", i, k, j, j));
+          reaches.add(String.format("v%dx%d().compromise", i, k));
+        }
+      }
+      for (int k = 0; k < transitive; k++) {
+        reaches.add(String.format("spread%dx%d", i, k));
+      }
+      sb.append(String.format("    | access%n"));
+      if (!reaches.isEmpty()) {
+        sb.append(String.format("      %s %s%n", root ? "->" : "+>", String.join(", ", reaches)));
+      }
+      if (root) {
+        sb.append(String.format("    & compromise [Exponential(0.1)]%n"));
+        sb.append(String.format("    # defended%n"));
+        sb.append(String.format("      -> compromise%n"));
+      }
+      for (int k = 0; k < transitive; k++) {
+        sb.append(String.format("    | spread%dx%d%n", i, k));
+        sb.append(String.format("      -> down%d*.compromise%n", i));
+      }
+      sb.append(String.format("  }%n"));
+    }
+    sb.append(String.format("}%n%n"));
+    sb.append(String.format("associations {%n"));
+    for (int j = 0; j < targets.length; j++) {
+      sb.append(
+          String.format(
+              "  A%d [in%d] * <-- L%d --> * [out%d] A%d%n", j / fanOut, j, j, j, targets[j]));
+    }
+    if (transitive > 0) {
+      for (int i = 0; i < assets; i++) {
+        sb.append(String.format("  A%d [up%d] * <-- T%d --> * [down%d] A%d%n", i, i, i, i, i));
+      }
+    }
+    sb.append(String.format("}%n"));
+    return sb.toString();
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2019 Foreseeti AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mal_lang.compiler.bench;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds instance models of a {@link SyntheticLang} with the classes generated for it by the
+ * reference generator. The same language, size and seed always give the same model.
+ *
+ * <p>Every instance is of a random asset. Every field {@code out<j>} of an instance, including
+ * inherited ones, is linked to one random instance of the target asset or of an asset extending
+ * it, and so is every field {@code down<i>}.
+ */
+public final class SyntheticModel {
+  private final SyntheticLang lang;
+  private final ClassLoader classLoader;
+  private final String pkg;
+
+  /**
+   * Creates a model builder for {@code lang}, whose classes in package {@code pkg} are loaded by
+   * {@code classLoader}.
+   */
+  public SyntheticModel(SyntheticLang lang, ClassLoader classLoader, String pkg) {
+    this.lang = lang;
+    this.classLoader = classLoader;
+    this.pkg = pkg;
+  }
+
+  /** Returns the number of attack steps of a model of {@code instances} instances. */
+  public long getAttackSteps(int instances, long seed) {
+    var random = new Random(seed);
+    long attackSteps = 0;
+    for (int n = 0; n < instances; n++) {
+      attackSteps += lang.getAttackSteps(random.nextInt(lang.getAssets()));
+    }
+    return attackSteps;
+  }
+
+  /**
+   * Creates {@code instances} instances and links them. The instances are registered in the
+   * current model context of the calling thread.
+   */
+  public List<Object> build(int instances, long seed) throws ReflectiveOperationException {
+    int assets = lang.getAssets();
+    var classes = new Class<?>[assets];
+    var constructors = new Constructor<?>[assets];
+    for (int i = 0; i < assets; i++) {
+      classes[i] = classLoader.loadClass(String.format("%s.A%d", pkg, i));
+      constructors[i] = classes[i].getConstructor(String.class);
+    }
+    var targets = lang.getTargets();
+    var adders = new Method[targets.length];
+    for (int j = 0; j < targets.length; j++) {
+      var owner = classes[j / lang.getFanOut()];
+      adders[j] = owner.getMethod(String.format("addOut%d", j), classes[targets[j]]);
+    }
+    var downAdders = new Method[assets];
+    if (lang.getTransitive() > 0) {
+      for (int i = 0; i < assets; i++) {
+        downAdders[i] = classes[i].getMethod(String.format("addDown%d", i), classes[i]);
+      }
+    }
+
+    // Create the instances, and index them by every asset they are an instance of
+    var random = new Random(seed);
+    var types = new int[instances];
+    var objects = new ArrayList<Object>(instances);
+    List<List<Object>> instancesOf = new ArrayList<>();
+    for (int i = 0; i < assets; i++) {
+      instancesOf.add(new ArrayList<>());
+    }
+    for (int n = 0; n < instances; n++) {
+      types[n] = random.nextInt(assets);
+      var object = newInstance(constructors[types[n]], String.format("a%d", n));
+      objects.add(object);
+      for (int i = types[n]; i != -1; i = lang.getSuperAsset(i)) {
+        instancesOf.get(i).add(object);
+      }
+    }
+
+    // Link every field of every instance, including inherited fields
+    for (int n = 0; n < instances; n++) {
+      var object = objects.get(n);
+      for (int i = types[n]; i != -1; i = lang.getSuperAsset(i)) {
+        for (int k = 0; k < lang.getFanOut(); k++) {
+          int j = i * lang.getFanOut() + k;
+          link(adders[j], object, instancesOf.get(targets[j]), random);
+        }
+        if (lang.getTransitive() > 0) {
+          link(downAdders[i], object, instancesOf.get(i), random);
+        }
+      }
+    }
+    return objects;
+  }
+
+  private static void link(Method adder, Object object, List<Object> candidates, Random random)
+      throws ReflectiveOperationException {
+    if (candidates.isEmpty()) {
+      return;
+    }
+    invoke(adder, object, candidates.get(random.nextInt(candidates.size())));
+  }
+
+  private static Object newInstance(Constructor<?> constructor, String name)
+      throws ReflectiveOperationException {
+    try {
+      return constructor.newInstance(name);
+    } catch (InvocationTargetException e) {
+      throw rethrow(e);
+    }
+  }
+
+  private static void invoke(Method method, Object object, Object argument)
+      throws ReflectiveOperationException {
+    try {
+      method.invoke(object, argument);
+    } catch (InvocationTargetException e) {
+      throw rethrow(e);
+    }
+  }
+
+  private static InvocationTargetException rethrow(InvocationTargetException e) {
+    if (e.getCause() instanceof RuntimeException) {
+      throw (RuntimeException) e.getCause();
+    } else if (e.getCause() instanceof Error) {
+      throw (Error) e.getCause();
+    }
+    return e;
+  }
+}
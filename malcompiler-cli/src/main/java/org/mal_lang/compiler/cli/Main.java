@@ -25,11 +25,14 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.stream.IntStream;
 import org.mal_lang.compiler.lib.AST;
+import org.mal_lang.compiler.lib.ASTCache;
 import org.mal_lang.compiler.lib.Analyzer;
 import org.mal_lang.compiler.lib.CompilerException;
 import org.mal_lang.compiler.lib.Lang;
 import org.mal_lang.compiler.lib.LangConverter;
+import org.mal_lang.compiler.lib.LangSerializer;
 import org.mal_lang.compiler.lib.Lexer;
 import org.mal_lang.compiler.lib.MalInfo;
 import org.mal_lang.compiler.lib.MalLogger;
@@ -40,13 +43,16 @@ import org.mal_lang.formatter.Formatter;
 
 public class Main {
   private static boolean useSGR = System.console() != null;
+  private static final List<String> TARGETS =
+      List.of("reference", "securicad", "format", "d3", "malc");
 
   private static class Options {
     public boolean lexer = false;
     public boolean parser = false;
     public boolean analyzer = false;
-    public String target = "reference";
+    public List<String> targets = new ArrayList<>();
     public Map<String, String> args = new HashMap<>();
+    public ASTCache cache = null;
     public boolean verbose = false;
     public boolean debug = false;
   }
@@ -102,7 +108,8 @@ public class Main {
             " malc [",
             SGR.italicized("OPTION"),
             "]... ",
-            SGR.italicized("FILE")));
+            SGR.italicized("FILE"),
+            "..."));
     lines.add(SGR.of());
     lines.add(SGR.bold("Options:"));
     lines.addAll(cli.getSGROptionLines());
@@ -112,6 +119,27 @@ public class Main {
     lines.add(SGR.of("  securicad"));
     lines.add(SGR.of("  format"));
     lines.add(SGR.of("  d3"));
+    lines.add(SGR.of("  malc"));
+    lines.add(
+        SGR.of(
+            "  ",
+            SGR.italicized("TARGET"),
+            " may be several targets separated by commas, or given several times"));
+    lines.add(SGR.of());
+    lines.add(
+        SGR.of(
+            SGR.bold("Args:"),
+            " [",
+            SGR.italicized("all"),
+            "] ",
+            SGR.fgRGB(135, 206, 235, "{name}"),
+            " and ",
+            SGR.fgRGB(135, 206, 235, "{target}"),
+            " are replaced by the name of the file"));
+    lines.add(
+        SGR.of(
+            "  and the target, and 'path' must contain them when several files or targets"));
+    lines.add(SGR.of("  are compiled, which is done concurrently"));
     lines.add(SGR.of());
     lines.add(SGR.of(SGR.bold("Args:"), " [", SGR.italicized("reference"), "]"));
     lines.add(
@@ -133,6 +161,17 @@ public class Main {
                 SGR.italicized("false"),
                 "]"),
             "Specifies if the core package should be generated"));
+    lines.add(
+        CLIParser.getSGROptionLine(
+            SGR.of(
+                "[",
+                SGR.fgRGB(135, 206, 235, "incremental"),
+                "=",
+                SGR.italicized("true"),
+                "|",
+                SGR.italicized(SGR.bold("false")),
+                "]"),
+            String.format("Only rewrite files that changed in a%nnon-empty PATH")));
     lines.add(SGR.of());
     lines.add(SGR.of(SGR.bold("Args:"), " [", SGR.italicized("securicad"), "]"));
     lines.add(
@@ -169,6 +208,17 @@ public class Main {
                 SGR.italicized(SGR.bold("false")),
                 "]"),
             "Specifies if debug steps should be kept"));
+    lines.add(
+        CLIParser.getSGROptionLine(
+            SGR.of(
+                "[",
+                SGR.fgRGB(135, 206, 235, "incremental"),
+                "=",
+                SGR.italicized("true"),
+                "|",
+                SGR.italicized(SGR.bold("false")),
+                "]"),
+            String.format("Only rewrite files that changed in a%nnon-empty PATH")));
     lines.add(SGR.of());
     lines.add(SGR.of(SGR.bold("Args:"), " [", SGR.italicized("d3"), "]"));
     lines.add(
@@ -176,6 +226,12 @@ public class Main {
             SGR.of(SGR.fgRGB(135, 206, 235, "path"), "=", SGR.italicized("PATH")),
             "Write generated sources to PATH"));
     lines.add(SGR.of());
+    lines.add(SGR.of(SGR.bold("Args:"), " [", SGR.italicized("malc"), "]"));
+    lines.add(
+        CLIParser.getSGROptionLine(
+            SGR.of(SGR.fgRGB(135, 206, 235, "path"), "=", SGR.italicized("PATH")),
+            "Write the compiled language to PATH"));
+    lines.add(SGR.of());
     lines.add(SGR.of(SGR.bold("Args:"), " [", SGR.italicized("format"), "]"));
     lines.add(
         CLIParser.getSGROptionLine(
@@ -190,6 +246,22 @@ public class Main {
                 "|",
                 SGR.italicized(SGR.bold("false"))),
             "Specifies if the formatter should format inplace"));
+    lines.add(
+        CLIParser.getSGROptionLine(
+            SGR.of(
+                "[",
+                SGR.fgRGB(135, 206, 235, "check"),
+                "=",
+                SGR.italicized("true"),
+                "|",
+                SGR.italicized(SGR.bold("false")),
+                "]"),
+            String.format("List the files that are not formatted, and%nfail if there are any")));
+    lines.add(
+        SGR.of(
+            "  ",
+            SGR.italicized("FILE"),
+            " may be several files or directories, which are formatted concurrently"));
     if (useSGR) {
       for (var line : lines) {
         System.err.println(line.getSGRString());
@@ -211,6 +283,105 @@ public class Main {
     }
   }
 
+  /** Returns the name of {@code file} without the .mal or .malc suffix. */
+  private static String getName(File file) {
+    var name = file.getName();
+    if (name.endsWith(LangSerializer.SUFFIX)) {
+      return name.substring(0, name.length() - LangSerializer.SUFFIX.length());
+    } else if (name.endsWith(".mal")) {
+      return name.substring(0, name.length() - ".mal".length());
+    }
+    return name;
+  }
+
+  /** Returns {@code args} with {name} and {target} replaced in every value. */
+  private static Map<String, String> getArgs(Map<String, String> args, File file, String target) {
+    var map = new HashMap<String, String>();
+    for (var entry : args.entrySet()) {
+      map.put(
+          entry.getKey(),
+          entry.getValue().replace("{name}", getName(file)).replace("{target}", target));
+    }
+    return map;
+  }
+
+  /**
+   * Compiles {@code file} to every target in {@code opts}, passing all messages to {@code out}. A
+   * .mal file is parsed and analyzed once, and converted to a new language for every target, since
+   * generators may modify it.
+   */
+  private static void compile(File file, Options opts, ASTCache cache, MalLogger out)
+      throws IOException, CompilerException {
+    AST ast = null;
+    if (!file.getName().endsWith(LangSerializer.SUFFIX)) {
+      ast = Parser.parse(file, cache, out);
+      Analyzer.analyze(ast, out);
+    }
+    for (var target : opts.targets) {
+      Lang lang = ast == null ? LangSerializer.read(file) : LangConverter.convert(ast, out);
+      generate(target, lang, getArgs(opts.args, file, target), out);
+    }
+  }
+
+  private static void generate(String target, Lang lang, Map<String, String> args, MalLogger out)
+      throws IOException, CompilerException {
+    if (target.equals("reference")) {
+      org.mal_lang.compiler.lib.reference.Generator.generate(lang, args, out);
+    } else if (target.equals("securicad")) {
+      org.mal_lang.compiler.lib.securicad.Generator.generate(lang, args, out);
+    } else if (target.equals("d3")) {
+      org.mal_lang.compiler.lib.d3.Generator.generate(lang, args, out);
+    } else if (target.equals("malc")) {
+      if (!args.containsKey("path") || args.get("path").isBlank()) {
+        throw new CompilerException("malc target requires argument 'path'");
+      }
+      LangSerializer.write(lang, new File(args.get("path")));
+    } else {
+      throw new CompilerException(String.format("Invalid compilation target %s", target));
+    }
+  }
+
+  /**
+   * Compiles every file in {@code files} concurrently. Files included by several of them are only
+   * parsed once. Each file logs to a logger of its own, and their messages are added to {@code
+   * LOGGER} in the order of the files when all files are done, after the error of the file if it
+   * failed.
+   */
+  private static void compileAll(List<File> files, Options opts, MalLogger LOGGER)
+      throws CompilerException {
+    var cache = opts.cache == null ? new ASTCache() : opts.cache;
+    var loggers = new MalLogger[files.size()];
+    var errors = new Exception[files.size()];
+    IntStream.range(0, files.size())
+        .parallel()
+        .forEach(
+            i -> {
+              loggers[i] = LOGGER.fork();
+              try {
+                compile(files.get(i), opts, cache, loggers[i]);
+              } catch (IOException | CompilerException e) {
+                errors[i] = e;
+              }
+            });
+    int failed = 0;
+    for (int i = 0; i < files.size(); i++) {
+      if (errors[i] != null) {
+        var msg = errors[i].getMessage();
+        if (msg != null && !msg.isBlank()) {
+          LOGGER.error(String.format("%s: %s", files.get(i).getPath(), msg));
+        } else {
+          LOGGER.error(String.format("%s could not be compiled", files.get(i).getPath()));
+        }
+        failed++;
+      }
+      LOGGER.addAll(loggers[i]);
+    }
+    if (failed > 0) {
+      throw new CompilerException(
+          String.format("%d of %d files failed to compile", failed, files.size()));
+    }
+  }
+
   public static void main(String[] args) {
     Locale.setDefault(Locale.ROOT);
 
@@ -222,6 +393,7 @@ public class Main {
         cli.addOption('a', "analyzer", NO_ARGUMENT, "Run the analyzer and print the results");
     int TARGET = cli.addOption('t', "target", REQUIRED_ARGUMENT, "TARGET", "Compilation target");
     int ARGS = cli.addOption("args", REQUIRED_ARGUMENT, "ARGS", "Code generation arguments");
+    int CACHE = cli.addOption("cache", REQUIRED_ARGUMENT, "DIR", "Cache parsed files in DIR");
     int VERBOSE = cli.addOption('v', "verbose", NO_ARGUMENT, "Print verbose output");
     int DEBUG = cli.addOption('d', "debug", NO_ARGUMENT, "Print debug output");
     int HELP = cli.addOption('h', "help", NO_ARGUMENT, "Print this help and exit");
@@ -244,9 +416,15 @@ public class Main {
       } else if (value == ANALYZER) {
         opts.analyzer = true;
       } else if (value == TARGET) {
-        opts.target = opt.getArgument();
+        for (var target : opt.getArgument().split(",")) {
+          if (!target.isBlank() && !opts.targets.contains(target.strip())) {
+            opts.targets.add(target.strip());
+          }
+        }
       } else if (value == ARGS) {
         opts.args.putAll(argsToMap(opt.getArgument()));
+      } else if (value == CACHE) {
+        opts.cache = new ASTCache(new File(opt.getArgument()));
       } else if (value == VERBOSE) {
         opts.verbose = true;
       } else if (value == DEBUG) {
@@ -267,15 +445,50 @@ public class Main {
       System.exit(1);
     }
 
-    // Check if multiple files were supplied
-    if (operands.size() > 1) {
-      printError("Only one file can be specified");
+    if (opts.targets.isEmpty()) {
+      opts.targets.add("reference");
+    }
+    for (var target : opts.targets) {
+      if (!TARGETS.contains(target)) {
+        printError(String.format("Invalid compilation target %s", target));
+        printHelp(cli);
+        System.exit(1);
+      }
+    }
+    boolean format = opts.targets.contains("format");
+    if (format && opts.targets.size() > 1) {
+      printError("Target 'format' can't be combined with other targets");
+      printHelp(cli);
+      System.exit(1);
+    }
+
+    // Check if multiple files were supplied, the phases only accept one
+    if (operands.size() > 1 && (opts.lexer || opts.parser || opts.analyzer)) {
+      printError("Only one file can be specified for the lexer, parser and analyzer");
       printHelp(cli);
       System.exit(1);
     }
 
-    var file = new File(operands.get(0));
-    var LOGGER = new MalLogger("MAIN", opts.verbose, opts.debug);
+    // Check that files and targets compiled together don't overwrite each other's output
+    if (!format && !opts.lexer && !opts.parser && !opts.analyzer) {
+      var path = opts.args.getOrDefault("path", "");
+      if (operands.size() > 1 && !path.contains("{name}")) {
+        printError("Argument 'path' must contain '{name}' when several files are compiled");
+        System.exit(1);
+      }
+      if (opts.targets.size() > 1 && !path.contains("{target}")) {
+        printError("Argument 'path' must contain '{target}' when several targets are compiled");
+        System.exit(1);
+      }
+    }
+
+    var files = new ArrayList<File>();
+    for (var operand : operands) {
+      files.add(new File(operand));
+    }
+    var file = files.get(0);
+    // Unbuffered, so that the messages passed to it are printed in the order they are logged
+    var LOGGER = new MalLogger("MAIN", opts.verbose, opts.debug, false);
 
     // Execute requested phase
     try {
@@ -287,31 +500,20 @@ public class Main {
           token = lexer.next();
         }
       } else if (opts.parser) {
-        AST ast = Parser.parse(file, opts.verbose, opts.debug);
+        AST ast = Parser.parse(file, opts.cache, opts.verbose, opts.debug);
         System.out.print(ast.toString());
       } else if (opts.analyzer) {
-        Analyzer.analyze(Parser.parse(file), opts.verbose, opts.debug);
-      } else if (opts.target.equals("format")) {
-        Formatter.format(file, opts.args);
-      } else if (opts.target.equals("reference")) {
-        AST ast = Parser.parse(file);
-        Analyzer.analyze(ast);
-        Lang lang = LangConverter.convert(ast);
-        org.mal_lang.compiler.lib.reference.Generator.generate(
-            lang, opts.args, opts.verbose, opts.debug);
-      } else if (opts.target.equals("securicad")) {
-        AST ast = Parser.parse(file);
-        Analyzer.analyze(ast);
-        Lang lang = LangConverter.convert(ast);
-        org.mal_lang.compiler.lib.securicad.Generator.generate(
-            lang, opts.args, opts.verbose, opts.debug);
-      } else if (opts.target.equals("d3")) {
-        AST ast = Parser.parse(file);
-        Analyzer.analyze(ast);
-        Lang lang = LangConverter.convert(ast);
-        org.mal_lang.compiler.lib.d3.Generator.generate(lang, opts.args);
+        Analyzer.analyze(Parser.parse(file, opts.cache), opts.verbose, opts.debug);
+      } else if (format) {
+        if (files.size() == 1 && !file.isDirectory() && !opts.args.containsKey("check")) {
+          Formatter.format(file, opts.args);
+        } else {
+          Formatter.formatAll(files, opts.args);
+        }
+      } else if (files.size() == 1) {
+        compile(file, opts, opts.cache, LOGGER);
       } else {
-        throw new CompilerException(String.format("Invalid compilation target %s", opts.target));
+        compileAll(files, opts, LOGGER);
       }
     } catch (IOException | CompilerException e) {
       var msg = e.getMessage();
@@ -0,0 +1,633 @@
+/*
+ * Copyright 2019 Foreseeti AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mal_lang.compiler.lib;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * On-disk cache of parsed MAL files. Entries are keyed by the content of a file and the version of
+ * the compiler, and hold the ASTs between the includes of the file. Only the lines and columns of
+ * positions are stored, the filename is given when an entry is loaded, since it depends on the
+ * file that was parsed first.
+ *
+ * <p>A cache without a directory keeps its entries in memory, e.g. to share the files included by
+ * several languages compiled in one run.
+ */
+public final class ASTCache {
+  private static final int MAGIC = 0x4d414c41;
+  private static final int FORMAT_VERSION = 1;
+  private static final String SUFFIX = ".ast";
+
+  private final Path directory;
+  private final Map<String, byte[]> entries;
+  private final byte[] version;
+
+  /** Creates a cache that keeps its entries in memory. */
+  public ASTCache() {
+    this(null, new ConcurrentHashMap<>());
+  }
+
+  /** Creates a cache that keeps its entries in {@code directory}. */
+  public ASTCache(File directory) {
+    this(directory.toPath(), null);
+  }
+
+  private ASTCache(Path directory, Map<String, byte[]> entries) {
+    this.directory = directory;
+    this.entries = entries;
+    String compilerVersion;
+    try {
+      compilerVersion = MalInfo.getVersion();
+    } catch (IOException e) {
+      compilerVersion = "unknown";
+    }
+    this.version =
+        String.format("%d:%s", FORMAT_VERSION, compilerVersion).getBytes(StandardCharsets.UTF_8);
+  }
+
+  /** An include of a cached file, in the order it appears in the file. */
+  static class Include {
+    public final Position pos;
+    public final String filename;
+
+    public Include(Position pos, String filename) {
+      this.pos = pos;
+      this.filename = filename;
+    }
+  }
+
+  /** A cached file, parts.get(i) precedes includes.get(i). */
+  static class Entry {
+    public final List<AST> parts;
+    public final List<Include> includes;
+
+    public Entry(List<AST> parts, List<Include> includes) {
+      this.parts = parts;
+      this.includes = includes;
+    }
+  }
+
+  /** Returns the cached entry of {@code content} with positions in {@code filename}, or null. */
+  Entry load(byte[] content, String filename) {
+    try {
+      byte[] bytes;
+      if (directory == null) {
+        bytes = entries.get(key(content));
+        if (bytes == null) {
+          return null;
+        }
+      } else {
+        var file = directory.resolve(key(content) + SUFFIX);
+        if (!Files.isRegularFile(file)) {
+          return null;
+        }
+        bytes = Files.readAllBytes(file);
+      }
+      var in = new DataInputStream(new ByteArrayInputStream(bytes));
+      return new Reader(in, filename).readEntry();
+    } catch (IOException | RuntimeException e) {
+      // Unreadable entries are reparsed and overwritten
+      return null;
+    }
+  }
+
+  /** Stores {@code entry} as the cached entry of {@code content}, ignoring any failures. */
+  void store(byte[] content, Entry entry) {
+    try {
+      var bytes = new ByteArrayOutputStream();
+      var out = new DataOutputStream(bytes);
+      new Writer(out).writeEntry(entry);
+      out.flush();
+      if (directory == null) {
+        entries.put(key(content), bytes.toByteArray());
+        return;
+      }
+      Files.createDirectories(directory);
+      var file = directory.resolve(key(content) + SUFFIX);
+      // Concurrent compilations may store the same entry, so it is written to a temporary file
+      // first and then moved into place
+      var tmp = Files.createTempFile(directory, "tmp", SUFFIX);
+      try {
+        Files.write(tmp, bytes.toByteArray());
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(tmp);
+      }
+    } catch (IOException e) {
+      // The cache is only an optimization
+    }
+  }
+
+  private String key(byte[] content) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+    digest.update(version);
+    digest.update((byte) 0);
+    digest.update(content);
+    var sb = new StringBuilder();
+    for (var b : digest.digest()) {
+      sb.append(String.format("%02x", b));
+    }
+    return sb.toString();
+  }
+
+  // Tags of the expression subclasses
+  private static final int TTC_ADD = 0;
+  private static final int TTC_SUB = 1;
+  private static final int TTC_MUL = 2;
+  private static final int TTC_DIV = 3;
+  private static final int TTC_POW = 4;
+  private static final int TTC_FUNC = 5;
+  private static final int TTC_NUM = 6;
+  private static final int UNION = 0;
+  private static final int DIFFERENCE = 1;
+  private static final int INTERSECTION = 2;
+  private static final int STEP = 3;
+  private static final int TRANSITIVE = 4;
+  private static final int SUB_TYPE = 5;
+  private static final int ID_EXPR = 6;
+  private static final int CALL = 7;
+
+  private static class Writer {
+    private final DataOutputStream out;
+
+    public Writer(DataOutputStream out) {
+      this.out = out;
+    }
+
+    public void writeEntry(Entry entry) throws IOException {
+      out.writeInt(MAGIC);
+      out.writeInt(FORMAT_VERSION);
+      out.writeInt(entry.parts.size());
+      for (var part : entry.parts) {
+        writeAST(part);
+      }
+      out.writeInt(entry.includes.size());
+      for (var include : entry.includes) {
+        writePosition(include.pos);
+        writeString(include.filename);
+      }
+    }
+
+    private void writeAST(AST ast) throws IOException {
+      var defines = ast.getDefines();
+      out.writeInt(defines.size());
+      for (var define : defines) {
+        writePosition(define);
+        writeID(define.key);
+        writeString(define.value);
+      }
+      var categories = ast.getCategories();
+      out.writeInt(categories.size());
+      for (var category : categories) {
+        writePosition(category);
+        writeID(category.name);
+        writeMeta(category.meta);
+        out.writeInt(category.assets.size());
+        for (var asset : category.assets) {
+          writeAsset(asset);
+        }
+      }
+      var associations = ast.getAssociations();
+      out.writeInt(associations.size());
+      for (var association : associations) {
+        writePosition(association);
+        writeID(association.leftAsset);
+        writeID(association.leftField);
+        out.writeByte(association.leftMult.ordinal());
+        writeID(association.linkName);
+        out.writeByte(association.rightMult.ordinal());
+        writeID(association.rightField);
+        writeID(association.rightAsset);
+        writeMeta(association.meta);
+      }
+    }
+
+    private void writeAsset(AST.Asset asset) throws IOException {
+      writePosition(asset);
+      out.writeBoolean(asset.isAbstract);
+      writeID(asset.name);
+      out.writeBoolean(asset.parent.isPresent());
+      if (asset.parent.isPresent()) {
+        writeID(asset.parent.get());
+      }
+      writeMeta(asset.meta);
+      out.writeInt(asset.attackSteps.size());
+      for (var attackStep : asset.attackSteps) {
+        writeAttackStep(attackStep);
+      }
+      out.writeInt(asset.variables.size());
+      for (var variable : asset.variables) {
+        writePosition(variable);
+        writeID(variable.name);
+        writeExpr(variable.expr);
+      }
+    }
+
+    private void writeAttackStep(AST.AttackStep attackStep) throws IOException {
+      writePosition(attackStep);
+      out.writeByte(attackStep.type.ordinal());
+      writeID(attackStep.name);
+      out.writeInt(attackStep.tags.size());
+      for (var tag : attackStep.tags) {
+        writeID(tag);
+      }
+      out.writeBoolean(attackStep.cia.isPresent());
+      if (attackStep.cia.isPresent()) {
+        out.writeInt(attackStep.cia.get().size());
+        for (var cia : attackStep.cia.get()) {
+          out.writeByte(cia.ordinal());
+        }
+      }
+      out.writeBoolean(attackStep.ttc.isPresent());
+      if (attackStep.ttc.isPresent()) {
+        writeTTCExpr(attackStep.ttc.get());
+      }
+      writeMeta(attackStep.meta);
+      out.writeBoolean(attackStep.requires.isPresent());
+      if (attackStep.requires.isPresent()) {
+        var requires = attackStep.requires.get();
+        writePosition(requires);
+        writeExprs(requires.requires);
+      }
+      out.writeBoolean(attackStep.reaches.isPresent());
+      if (attackStep.reaches.isPresent()) {
+        var reaches = attackStep.reaches.get();
+        writePosition(reaches);
+        out.writeBoolean(reaches.inherits);
+        writeExprs(reaches.reaches);
+      }
+    }
+
+    private void writeTTCExpr(AST.TTCExpr expr) throws IOException {
+      if (expr instanceof AST.TTCBinaryExpr) {
+        if (expr instanceof AST.TTCAddExpr) {
+          out.writeByte(TTC_ADD);
+        } else if (expr instanceof AST.TTCSubExpr) {
+          out.writeByte(TTC_SUB);
+        } else if (expr instanceof AST.TTCMulExpr) {
+          out.writeByte(TTC_MUL);
+        } else if (expr instanceof AST.TTCDivExpr) {
+          out.writeByte(TTC_DIV);
+        } else if (expr instanceof AST.TTCPowExpr) {
+          out.writeByte(TTC_POW);
+        } else {
+          throw new IOException(String.format("Unknown ttc expression %s", expr));
+        }
+        writePosition(expr);
+        writeTTCExpr(((AST.TTCBinaryExpr) expr).lhs);
+        writeTTCExpr(((AST.TTCBinaryExpr) expr).rhs);
+      } else if (expr instanceof AST.TTCFuncExpr) {
+        var func = (AST.TTCFuncExpr) expr;
+        out.writeByte(TTC_FUNC);
+        writePosition(func);
+        writeID(func.name);
+        out.writeInt(func.params.size());
+        for (var param : func.params) {
+          out.writeDouble(param);
+        }
+      } else if (expr instanceof AST.TTCNumExpr) {
+        out.writeByte(TTC_NUM);
+        writePosition(expr);
+        out.writeDouble(((AST.TTCNumExpr) expr).value);
+      } else {
+        throw new IOException(String.format("Unknown ttc expression %s", expr));
+      }
+    }
+
+    private void writeExprs(List<AST.Expr> exprs) throws IOException {
+      out.writeInt(exprs.size());
+      for (var expr : exprs) {
+        writeExpr(expr);
+      }
+    }
+
+    private void writeExpr(AST.Expr expr) throws IOException {
+      if (expr instanceof AST.BinaryExpr) {
+        if (expr instanceof AST.UnionExpr) {
+          out.writeByte(UNION);
+        } else if (expr instanceof AST.DifferenceExpr) {
+          out.writeByte(DIFFERENCE);
+        } else if (expr instanceof AST.IntersectionExpr) {
+          out.writeByte(INTERSECTION);
+        } else if (expr instanceof AST.StepExpr) {
+          out.writeByte(STEP);
+        } else {
+          throw new IOException(String.format("Unknown expression %s", expr));
+        }
+        writePosition(expr);
+        writeExpr(((AST.BinaryExpr) expr).lhs);
+        writeExpr(((AST.BinaryExpr) expr).rhs);
+      } else if (expr instanceof AST.TransitiveExpr) {
+        out.writeByte(TRANSITIVE);
+        writePosition(expr);
+        writeExpr(((AST.TransitiveExpr) expr).e);
+      } else if (expr instanceof AST.SubTypeExpr) {
+        out.writeByte(SUB_TYPE);
+        writePosition(expr);
+        writeExpr(((AST.SubTypeExpr) expr).e);
+        writeID(((AST.SubTypeExpr) expr).subType);
+      } else if (expr instanceof AST.IDExpr) {
+        out.writeByte(ID_EXPR);
+        writePosition(expr);
+        writeID(((AST.IDExpr) expr).id);
+      } else if (expr instanceof AST.CallExpr) {
+        out.writeByte(CALL);
+        writePosition(expr);
+        writeID(((AST.CallExpr) expr).id);
+      } else {
+        throw new IOException(String.format("Unknown expression %s", expr));
+      }
+    }
+
+    private void writeMeta(List<AST.Meta> meta) throws IOException {
+      out.writeInt(meta.size());
+      for (var m : meta) {
+        writePosition(m);
+        writeID(m.type);
+        writeString(m.string);
+      }
+    }
+
+    private void writeID(AST.ID id) throws IOException {
+      writePosition(id);
+      writeString(id.id);
+    }
+
+    private void writePosition(Position pos) throws IOException {
+      out.writeInt(pos.line);
+      out.writeInt(pos.col);
+    }
+
+    private void writeString(String str) throws IOException {
+      var bytes = str.getBytes(StandardCharsets.UTF_8);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  private static class Reader {
+    private final DataInputStream in;
+    private final String filename;
+
+    public Reader(DataInputStream in, String filename) {
+      this.in = in;
+      this.filename = filename;
+    }
+
+    public Entry readEntry() throws IOException {
+      if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+        throw new IOException("Invalid cache entry");
+      }
+      var parts = new ArrayList<AST>();
+      int numParts = in.readInt();
+      for (int i = 0; i < numParts; i++) {
+        parts.add(readAST());
+      }
+      var includes = new ArrayList<Include>();
+      int numIncludes = in.readInt();
+      for (int i = 0; i < numIncludes; i++) {
+        var pos = readPosition();
+        includes.add(new Include(pos, readString()));
+      }
+      if (includes.size() + 1 != parts.size() || in.available() != 0) {
+        throw new IOException("Invalid cache entry");
+      }
+      return new Entry(parts, includes);
+    }
+
+    private AST readAST() throws IOException {
+      var ast = new AST();
+      int numDefines = in.readInt();
+      for (int i = 0; i < numDefines; i++) {
+        var pos = readPosition();
+        var key = readID();
+        ast.addDefine(new AST.Define(pos, key, readString()));
+      }
+      int numCategories = in.readInt();
+      for (int i = 0; i < numCategories; i++) {
+        var pos = readPosition();
+        var name = readID();
+        var meta = readMeta();
+        var assets = new ArrayList<AST.Asset>();
+        int numAssets = in.readInt();
+        for (int j = 0; j < numAssets; j++) {
+          assets.add(readAsset());
+        }
+        ast.addCategory(new AST.Category(pos, name, meta, assets));
+      }
+      var associations = new ArrayList<AST.Association>();
+      int numAssociations = in.readInt();
+      for (int i = 0; i < numAssociations; i++) {
+        var pos = readPosition();
+        var leftAsset = readID();
+        var leftField = readID();
+        var leftMult = AST.Multiplicity.values()[in.readByte()];
+        var linkName = readID();
+        var rightMult = AST.Multiplicity.values()[in.readByte()];
+        var rightField = readID();
+        var rightAsset = readID();
+        var meta = readMeta();
+        associations.add(
+            new AST.Association(
+                pos,
+                leftAsset,
+                leftField,
+                leftMult,
+                linkName,
+                rightMult,
+                rightField,
+                rightAsset,
+                meta));
+      }
+      ast.addAssociations(associations);
+      return ast;
+    }
+
+    private AST.Asset readAsset() throws IOException {
+      var pos = readPosition();
+      var isAbstract = in.readBoolean();
+      var name = readID();
+      Optional<AST.ID> parent = Optional.empty();
+      if (in.readBoolean()) {
+        parent = Optional.of(readID());
+      }
+      var meta = readMeta();
+      var attackSteps = new ArrayList<AST.AttackStep>();
+      int numAttackSteps = in.readInt();
+      for (int i = 0; i < numAttackSteps; i++) {
+        attackSteps.add(readAttackStep());
+      }
+      var variables = new ArrayList<AST.Variable>();
+      int numVariables = in.readInt();
+      for (int i = 0; i < numVariables; i++) {
+        var variablePos = readPosition();
+        var variableName = readID();
+        variables.add(new AST.Variable(variablePos, variableName, readExpr()));
+      }
+      return new AST.Asset(pos, isAbstract, name, parent, meta, attackSteps, variables);
+    }
+
+    private AST.AttackStep readAttackStep() throws IOException {
+      var pos = readPosition();
+      var type = AST.AttackStepType.values()[in.readByte()];
+      var name = readID();
+      var tags = new ArrayList<AST.ID>();
+      int numTags = in.readInt();
+      for (int i = 0; i < numTags; i++) {
+        tags.add(readID());
+      }
+      Optional<List<AST.CIA>> cia = Optional.empty();
+      if (in.readBoolean()) {
+        var ciaList = new ArrayList<AST.CIA>();
+        int numCIA = in.readInt();
+        for (int i = 0; i < numCIA; i++) {
+          ciaList.add(AST.CIA.values()[in.readByte()]);
+        }
+        cia = Optional.of(ciaList);
+      }
+      Optional<AST.TTCExpr> ttc = Optional.empty();
+      if (in.readBoolean()) {
+        ttc = Optional.of(readTTCExpr());
+      }
+      var meta = readMeta();
+      Optional<AST.Requires> requires = Optional.empty();
+      if (in.readBoolean()) {
+        var requiresPos = readPosition();
+        requires = Optional.of(new AST.Requires(requiresPos, readExprs()));
+      }
+      Optional<AST.Reaches> reaches = Optional.empty();
+      if (in.readBoolean()) {
+        var reachesPos = readPosition();
+        var inherits = in.readBoolean();
+        reaches = Optional.of(new AST.Reaches(reachesPos, inherits, readExprs()));
+      }
+      return new AST.AttackStep(pos, type, name, tags, cia, ttc, meta, requires, reaches);
+    }
+
+    private AST.TTCExpr readTTCExpr() throws IOException {
+      int tag = in.readByte();
+      var pos = readPosition();
+      switch (tag) {
+        case TTC_ADD:
+          return new AST.TTCAddExpr(pos, readTTCExpr(), readTTCExpr());
+        case TTC_SUB:
+          return new AST.TTCSubExpr(pos, readTTCExpr(), readTTCExpr());
+        case TTC_MUL:
+          return new AST.TTCMulExpr(pos, readTTCExpr(), readTTCExpr());
+        case TTC_DIV:
+          return new AST.TTCDivExpr(pos, readTTCExpr(), readTTCExpr());
+        case TTC_POW:
+          return new AST.TTCPowExpr(pos, readTTCExpr(), readTTCExpr());
+        case TTC_FUNC:
+          var name = readID();
+          var params = new ArrayList<Double>();
+          int numParams = in.readInt();
+          for (int i = 0; i < numParams; i++) {
+            params.add(in.readDouble());
+          }
+          return new AST.TTCFuncExpr(pos, name, params);
+        case TTC_NUM:
+          return new AST.TTCNumExpr(pos, in.readDouble());
+        default:
+          throw new IOException(String.format("Invalid ttc expression tag %d", tag));
+      }
+    }
+
+    private List<AST.Expr> readExprs() throws IOException {
+      var exprs = new ArrayList<AST.Expr>();
+      int numExprs = in.readInt();
+      for (int i = 0; i < numExprs; i++) {
+        exprs.add(readExpr());
+      }
+      return exprs;
+    }
+
+    private AST.Expr readExpr() throws IOException {
+      int tag = in.readByte();
+      var pos = readPosition();
+      switch (tag) {
+        case UNION:
+          return new AST.UnionExpr(pos, readExpr(), readExpr());
+        case DIFFERENCE:
+          return new AST.DifferenceExpr(pos, readExpr(), readExpr());
+        case INTERSECTION:
+          return new AST.IntersectionExpr(pos, readExpr(), readExpr());
+        case STEP:
+          return new AST.StepExpr(pos, readExpr(), readExpr());
+        case TRANSITIVE:
+          return new AST.TransitiveExpr(pos, readExpr());
+        case SUB_TYPE:
+          var e = readExpr();
+          return new AST.SubTypeExpr(pos, e, readID());
+        case ID_EXPR:
+          return new AST.IDExpr(pos, readID());
+        case CALL:
+          return new AST.CallExpr(pos, readID());
+        default:
+          throw new IOException(String.format("Invalid expression tag %d", tag));
+      }
+    }
+
+    private List<AST.Meta> readMeta() throws IOException {
+      var meta = new ArrayList<AST.Meta>();
+      int numMeta = in.readInt();
+      for (int i = 0; i < numMeta; i++) {
+        var pos = readPosition();
+        var type = readID();
+        meta.add(new AST.Meta(pos, type, readString()));
+      }
+      return meta;
+    }
+
+    private AST.ID readID() throws IOException {
+      var pos = readPosition();
+      return new AST.ID(pos, readString());
+    }
+
+    private Position readPosition() throws IOException {
+      int line = in.readInt();
+      int col = in.readInt();
+      return new Position(filename, line, col);
+    }
+
+    private String readString() throws IOException {
+      var bytes = new byte[in.readInt()];
+      in.readFully(bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+  }
+}
@@ -26,32 +26,60 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.stream.IntStream;
 
 public class Analyzer {
   private MalLogger LOGGER;
   private Map<String, AST.Asset> assets = new LinkedHashMap<>();
-  private Map<String, Scope<AST.Variable>> assetVariables = new LinkedHashMap<>();
-  private Map<String, Scope<AST.Association>> fields = new LinkedHashMap<>();
-  private Map<String, Scope<AST.AttackStep>> steps = new LinkedHashMap<>();
+  // Scopes are added concurrently by the per-asset checks, each asset only adds its own
+  private Map<String, Scope<AST.Variable>> assetVariables = new ConcurrentHashMap<>();
+  private Map<String, Scope<AST.Association>> fields = new ConcurrentHashMap<>();
+  private Map<String, Scope<AST.AttackStep>> steps = new ConcurrentHashMap<>();
   private Set<AST.Variable> currentVariables = new LinkedHashSet<>();
   private Map<AST.Variable, Integer> variableReferenceCount = new HashMap<>();
+  private Set<AST.Variable> resetVariables = new HashSet<>();
   private Map<AST.Association, Map<String, Integer>> fieldReferenceCount = new HashMap<>();
+  private List<AST.Association> associations;
+  private Map<String, List<AssociationEnd>> associationEnds = new HashMap<>();
 
   private AST ast;
   private boolean failed;
 
-  private Analyzer(AST ast, boolean verbose, boolean debug) {
+  private Analyzer(AST ast, MalLogger LOGGER) {
     Locale.setDefault(Locale.ROOT);
-    LOGGER = new MalLogger("ANALYZER", verbose, debug);
+    this.LOGGER = LOGGER;
     this.ast = ast;
   }
 
+  /**
+   * Creates a worker for the per-asset checks. The worker shares the assets and scopes of {@code
+   * analyzer}, but buffers its own diagnostics and references until it is merged back.
+   */
+  private Analyzer(Analyzer analyzer) {
+    LOGGER = new MalLogger("ANALYZER", analyzer.LOGGER.isVerbose(), analyzer.LOGGER.isDebug());
+    this.ast = analyzer.ast;
+    this.assets = analyzer.assets;
+    this.assetVariables = analyzer.assetVariables;
+    this.fields = analyzer.fields;
+    this.steps = analyzer.steps;
+    this.associations = analyzer.associations;
+    this.associationEnds = analyzer.associationEnds;
+  }
+
   public static void analyze(AST ast) throws CompilerException {
     analyze(ast, false, false);
   }
 
   public static void analyze(AST ast, boolean verbose, boolean debug) throws CompilerException {
-    new Analyzer(ast, verbose, debug).analyzeLog();
+    new Analyzer(ast, new MalLogger("ANALYZER", verbose, debug)).analyzeLog();
+  }
+
+  /** Analyzes {@code ast} and passes the messages of the analyzer to {@code out}. */
+  public static void analyze(AST ast, MalLogger out) throws CompilerException {
+    new Analyzer(ast, new MalLogger("ANALYZER", out)).analyzeLog();
   }
 
   private void analyzeLog() throws CompilerException {
@@ -92,17 +120,44 @@ public class Analyzer {
     }
   }
 
+  /** The field of an association that an asset can reach through it. */
+  private static class AssociationEnd {
+    public final AST.Association assoc;
+    public final AST.ID field;
+
+    public AssociationEnd(AST.Association assoc, AST.ID field) {
+      this.assoc = assoc;
+      this.field = field;
+    }
+  }
+
   private void collectAssociations() {
-    for (AST.Association assoc : ast.getAssociations()) {
+    associations = ast.getAssociations();
+    for (AST.Association assoc : associations) {
       setupFieldReferenceCounts(assoc);
+      addAssociationEnd(assoc.leftAsset, assoc, assoc.rightField);
+      // Association can be made from one asset to itself
+      addAssociationEnd(assoc.rightAsset, assoc, assoc.leftField);
     }
   }
 
+  private void addAssociationEnd(AST.ID asset, AST.Association assoc, AST.ID field) {
+    if (!associationEnds.containsKey(asset.id)) {
+      associationEnds.put(asset.id, new ArrayList<>());
+    }
+    associationEnds.get(asset.id).add(new AssociationEnd(assoc, field));
+  }
+
   private void addVariableReference(AST.Variable variable) {
-    int oldval = variableReferenceCount.get(variable);
+    int oldval = variableReferenceCount.getOrDefault(variable, 0);
     variableReferenceCount.put(variable, oldval + 1);
   }
 
+  private void resetVariableReferences(AST.Variable variable) {
+    variableReferenceCount.put(variable, 0);
+    resetVariables.add(variable);
+  }
+
   private void setupFieldReferenceCounts(AST.Association assoc) {
     Map<String, Integer> fieldCounts = new HashMap<>();
     fieldCounts.put(assoc.leftField.id, 0);
@@ -111,6 +166,9 @@ public class Analyzer {
   }
 
   private void addFieldReference(AST.Association assoc, AST.ID field) {
+    if (!fieldReferenceCount.containsKey(assoc)) {
+      setupFieldReferenceCounts(assoc);
+    }
     var fieldCounts = fieldReferenceCount.get(assoc);
     int oldcount = fieldCounts.get(field.id);
     fieldCounts.put(field.id, oldcount + 1);
@@ -118,7 +176,7 @@ public class Analyzer {
 
   private void checkAssociations() throws CompilerException {
     boolean err = false;
-    for (AST.Association assoc : ast.getAssociations()) {
+    for (AST.Association assoc : associations) {
       if (!assets.containsKey(assoc.leftAsset.id)) {
         error(assoc.leftAsset, String.format("Left asset '%s' is not defined", assoc.leftAsset.id));
         err = true;
@@ -227,7 +285,7 @@ public class Analyzer {
       }
     }
     // Check meta info for associations
-    for (var association : ast.getAssociations()) {
+    for (var association : associations) {
       checkMeta(association.meta);
     }
   }
@@ -326,33 +384,36 @@ public class Analyzer {
   }
 
   private void checkSteps() {
-    for (AST.Asset asset : assets.values()) {
-      Scope<AST.AttackStep> scope = new Scope<>();
-      steps.put(asset.name.id, scope);
-      readSteps(scope, asset);
-    }
+    checkEachAsset(
+        (analyzer, asset) -> {
+          Scope<AST.AttackStep> scope = new Scope<>();
+          analyzer.steps.put(asset.name.id, scope);
+          analyzer.readSteps(scope, asset);
+        });
   }
 
   private void checkCIA() {
-    for (var asset : assets.values()) {
-      for (var attackStep : asset.attackSteps) {
-        if (attackStep.cia.isPresent()) {
-          if (attackStep.type == AST.AttackStepType.DEFENSE
-              || attackStep.type == AST.AttackStepType.EXIST
-              || attackStep.type == AST.AttackStepType.NOTEXIST) {
-            error(attackStep.name, "Defenses cannot have CIA classifications");
-          }
-          var cias = new HashSet<AST.CIA>();
-          for (var cia : attackStep.cia.get()) {
-            if (cias.contains(cia)) {
-              LOGGER.warning(
-                  attackStep.name,
-                  String.format(
-                      "Attack step %s.%s contains duplicate classification {%s}",
-                      asset.name.id, attackStep.name.id, cia));
-            } else {
-              cias.add(cia);
-            }
+    checkEachAsset(Analyzer::checkCIA);
+  }
+
+  private void checkCIA(AST.Asset asset) {
+    for (var attackStep : asset.attackSteps) {
+      if (attackStep.cia.isPresent()) {
+        if (attackStep.type == AST.AttackStepType.DEFENSE
+            || attackStep.type == AST.AttackStepType.EXIST
+            || attackStep.type == AST.AttackStepType.NOTEXIST) {
+          error(attackStep.name, "Defenses cannot have CIA classifications");
+        }
+        var cias = new HashSet<AST.CIA>();
+        for (var cia : attackStep.cia.get()) {
+          if (cias.contains(cia)) {
+            LOGGER.warning(
+                attackStep.name,
+                String.format(
+                    "Attack step %s.%s contains duplicate classification {%s}",
+                    asset.name.id, attackStep.name.id, cia));
+          } else {
+            cias.add(cia);
           }
         }
       }
@@ -360,41 +421,43 @@ public class Analyzer {
   }
 
   private void checkTTC() {
-    for (AST.Asset asset : assets.values()) {
-      for (AST.AttackStep attackStep : asset.attackSteps) {
-        if (attackStep.ttc.isPresent()) {
-          AST.TTCExpr ttc = attackStep.ttc.get();
-          if (attackStep.type == AST.AttackStepType.DEFENSE) {
-            if (!(ttc instanceof AST.TTCFuncExpr)) {
-              error(
-                  attackStep,
-                  String.format(
-                      "Defense %s.%s may not have advanced TTC expressions",
-                      asset.name.id, attackStep.name.id));
-            } else {
-              AST.TTCFuncExpr func = (AST.TTCFuncExpr) ttc;
-              switch (func.name.id) {
-                case "Enabled":
-                case "Disabled":
-                case "Bernoulli":
-                  try {
-                    Distributions.validate(func.name.id, func.params);
-                  } catch (CompilerException e) {
-                    error(func, e.getMessage());
-                  }
-                  break;
-                default:
-                  error(
-                      attackStep,
-                      String.format(
-                          "Defense %s.%s may only have 'Enabled', 'Disabled', or 'Bernoulli(p)' as TTC",
-                          asset.name.id, attackStep.name.id));
-              }
+    checkEachAsset(Analyzer::checkTTC);
+  }
+
+  private void checkTTC(AST.Asset asset) {
+    for (AST.AttackStep attackStep : asset.attackSteps) {
+      if (attackStep.ttc.isPresent()) {
+        AST.TTCExpr ttc = attackStep.ttc.get();
+        if (attackStep.type == AST.AttackStepType.DEFENSE) {
+          if (!(ttc instanceof AST.TTCFuncExpr)) {
+            error(
+                attackStep,
+                String.format(
+                    "Defense %s.%s may not have advanced TTC expressions",
+                    asset.name.id, attackStep.name.id));
+          } else {
+            AST.TTCFuncExpr func = (AST.TTCFuncExpr) ttc;
+            switch (func.name.id) {
+              case "Enabled":
+              case "Disabled":
+              case "Bernoulli":
+                try {
+                  Distributions.validate(func.name.id, func.params);
+                } catch (CompilerException e) {
+                  error(func, e.getMessage());
+                }
+                break;
+              default:
+                error(
+                    attackStep,
+                    String.format(
+                        "Defense %s.%s may only have 'Enabled', 'Disabled', or 'Bernoulli(p)' as TTC",
+                        asset.name.id, attackStep.name.id));
             }
-          } else if (attackStep.type == AST.AttackStepType.ALL
-              || attackStep.type == AST.AttackStepType.ANY) {
-            checkTTCExpr(attackStep.ttc.get());
           }
+        } else if (attackStep.type == AST.AttackStepType.ALL
+            || attackStep.type == AST.AttackStepType.ANY) {
+          checkTTCExpr(attackStep.ttc.get());
         }
       }
     }
@@ -440,6 +503,60 @@ public class Analyzer {
     }
   }
 
+  /**
+   * Runs {@code check} for each asset on the common fork-join pool. The assets are split into
+   * chunks that are checked by separate workers, and the workers are merged back in the order of
+   * the assets, so the diagnostics and references do not depend on the scheduling.
+   *
+   * @param check Check to run with a worker and an asset
+   */
+  private void checkEachAsset(BiConsumer<Analyzer, AST.Asset> check) {
+    var assetList = new ArrayList<>(assets.values());
+    if (assetList.isEmpty()) {
+      return;
+    }
+    int chunks = Math.min(assetList.size(), 4 * ForkJoinPool.getCommonPoolParallelism());
+    var workers = new Analyzer[chunks];
+    IntStream.range(0, chunks)
+        .parallel()
+        .forEach(
+            chunk -> {
+              var worker = new Analyzer(this);
+              int from = chunk * assetList.size() / chunks;
+              int to = (chunk + 1) * assetList.size() / chunks;
+              for (var asset : assetList.subList(from, to)) {
+                check.accept(worker, asset);
+              }
+              workers[chunk] = worker;
+            });
+    for (var worker : workers) {
+      merge(worker);
+    }
+  }
+
+  private void merge(Analyzer worker) {
+    LOGGER.addAll(worker.LOGGER);
+    failed |= worker.failed;
+    // References made before a variable was reset are dropped, as if the assets had been checked
+    // one after another
+    for (var variable : worker.resetVariables) {
+      resetVariableReferences(variable);
+    }
+    for (var entry : worker.variableReferenceCount.entrySet()) {
+      int oldval = variableReferenceCount.getOrDefault(entry.getKey(), 0);
+      variableReferenceCount.put(entry.getKey(), oldval + entry.getValue());
+    }
+    for (var entry : worker.fieldReferenceCount.entrySet()) {
+      if (!fieldReferenceCount.containsKey(entry.getKey())) {
+        setupFieldReferenceCounts(entry.getKey());
+      }
+      var fieldCounts = fieldReferenceCount.get(entry.getKey());
+      for (var field : entry.getValue().entrySet()) {
+        fieldCounts.put(field.getKey(), fieldCounts.get(field.getKey()) + field.getValue());
+      }
+    }
+  }
+
   /**
    * Retrieves a list of an assets parents (including itself). The oldest parents will be first in
    * the list. E.g. Alpha extends Bravo extends Charlie would return [Charlie, Bravo, Alpha] for
@@ -517,19 +634,21 @@ public class Analyzer {
   }
 
   private void checkVariables() {
-    for (AST.Asset asset : assets.values()) {
-      Scope<AST.Variable> scope = new Scope<>();
-      assetVariables.put(asset.name.id, scope);
-      readVariables(scope, asset);
-    }
-
-    for (AST.Asset asset : assets.values()) {
-      var scope = assetVariables.get(asset.name.id);
-      for (var variable : scope.getSymbols().entrySet()) {
-        variableToAsset(asset, variable.getValue());
-        variableReferenceCount.put(variable.getValue(), 0);
-      }
-    }
+    checkEachAsset(
+        (analyzer, asset) -> {
+          Scope<AST.Variable> scope = new Scope<>();
+          analyzer.assetVariables.put(asset.name.id, scope);
+          analyzer.readVariables(scope, asset);
+        });
+
+    checkEachAsset(
+        (analyzer, asset) -> {
+          var scope = analyzer.assetVariables.get(asset.name.id);
+          for (var variable : scope.getSymbols().entrySet()) {
+            analyzer.variableToAsset(asset, variable.getValue());
+            analyzer.resetVariableReferences(variable.getValue());
+          }
+        });
   }
 
   /**
@@ -552,11 +671,12 @@ public class Analyzer {
   }
 
   private void checkFields() {
-    for (AST.Asset asset : assets.values()) {
-      Scope<AST.Association> scope = new Scope<>();
-      fields.put(asset.name.id, scope);
-      readFields(scope, asset);
-    }
+    checkEachAsset(
+        (analyzer, asset) -> {
+          Scope<AST.Association> scope = new Scope<>();
+          analyzer.fields.put(asset.name.id, scope);
+          analyzer.readFields(scope, asset);
+        });
   }
 
   /**
@@ -572,14 +692,8 @@ public class Analyzer {
         scope = new Scope<>(scope);
         fields.put(asset.name.id, scope);
       }
-      for (AST.Association assoc : ast.getAssociations()) {
-        if (assoc.leftAsset.id.equals(parent.name.id)) {
-          addField(scope, parent, asset, assoc.rightField, assoc);
-        }
-        // Association can be made from one asset to itself
-        if (assoc.rightAsset.id.equals(parent.name.id)) {
-          addField(scope, parent, asset, assoc.leftField, assoc);
-        }
+      for (var end : associationEnds.getOrDefault(parent.name.id, List.of())) {
+        addField(scope, parent, asset, end.field, end.assoc);
       }
     }
   }
@@ -636,45 +750,47 @@ public class Analyzer {
 
   /** Evaluates each expression reached by an attack step. */
   private void checkReaches() throws CompilerException {
-    for (AST.Asset asset : assets.values()) {
-      for (AST.AttackStep attackStep : asset.attackSteps) {
-        if (attackStep.type == AST.AttackStepType.EXIST
-            || attackStep.type == AST.AttackStepType.NOTEXIST) {
-          if (attackStep.ttc.isPresent()) {
-            error(
-                attackStep,
-                String.format("Attack step of type '%s' must not have TTC", attackStep.type));
-            continue;
-          }
-          if (attackStep.requires.isPresent()) {
-            // Requires (<-)
-            for (AST.Expr expr : attackStep.requires.get().requires) {
-              // Requires only have expressions that ends in assets/fields, not attack steps.
-              checkToAsset(asset, expr);
-            }
-          } else {
-            error(
-                attackStep,
-                String.format("Attack step of type '%s' must have require '<-'", attackStep.type));
-            continue;
+    checkEachAsset(Analyzer::checkReaches);
+    if (failed) {
+      throw exception();
+    }
+  }
+
+  private void checkReaches(AST.Asset asset) {
+    for (AST.AttackStep attackStep : asset.attackSteps) {
+      if (attackStep.type == AST.AttackStepType.EXIST
+          || attackStep.type == AST.AttackStepType.NOTEXIST) {
+        if (attackStep.ttc.isPresent()) {
+          error(
+              attackStep,
+              String.format("Attack step of type '%s' must not have TTC", attackStep.type));
+          continue;
+        }
+        if (attackStep.requires.isPresent()) {
+          // Requires (<-)
+          for (AST.Expr expr : attackStep.requires.get().requires) {
+            // Requires only have expressions that ends in assets/fields, not attack steps.
+            checkToAsset(asset, expr);
           }
-        } else if (attackStep.requires.isPresent()) {
+        } else {
           error(
-              attackStep.requires.get(),
-              "Require '<-' may only be defined for attack step type exist 'E' or not-exist '!E'");
+              attackStep,
+              String.format("Attack step of type '%s' must have require '<-'", attackStep.type));
           continue;
         }
+      } else if (attackStep.requires.isPresent()) {
+        error(
+            attackStep.requires.get(),
+            "Require '<-' may only be defined for attack step type exist 'E' or not-exist '!E'");
+        continue;
+      }
 
-        if (attackStep.reaches.isPresent()) {
-          for (AST.Expr expr : attackStep.reaches.get().reaches) {
-            checkToStep(asset, expr);
-          }
+      if (attackStep.reaches.isPresent()) {
+        for (AST.Expr expr : attackStep.reaches.get().reaches) {
+          checkToStep(asset, expr);
         }
       }
     }
-    if (failed) {
-      throw exception();
-    }
   }
 
   private AST.AttackStep checkToStep(AST.Asset asset, AST.Expr expr) {
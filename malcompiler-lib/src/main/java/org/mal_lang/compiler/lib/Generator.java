@@ -16,7 +16,12 @@
 package org.mal_lang.compiler.lib;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.stream.IntStream;
 
 public abstract class Generator {
   protected final MalLogger LOGGER;
@@ -30,16 +35,54 @@ public abstract class Generator {
     this.LOGGER = LOGGER;
   }
 
-  /** Name generator to avoid variable duplication. */
+  /** Name generator to avoid variable duplication, with a counter for each thread. */
   protected static class Name {
-    private static int value = 0;
+    private static final ThreadLocal<Integer> value = ThreadLocal.withInitial(() -> 0);
 
     public static String get() {
-      return String.format("_%s", Integer.toHexString(value++));
+      int next = value.get();
+      value.set(next + 1);
+      return String.format("_%s", Integer.toHexString(next));
     }
 
     public static void reset() {
-      value = 0;
+      value.set(0);
+    }
+  }
+
+  /** Generates the output of one asset, logging to {@code LOGGER}. */
+  protected interface AssetTask {
+    void generate(MalLogger LOGGER, Lang.Asset asset) throws IOException;
+  }
+
+  /**
+   * Runs {@code task} for each asset on the common fork-join pool. Each asset gets a logger of its
+   * own, and their messages are added to {@link #LOGGER} in the order of {@code assets} when all
+   * assets are done, so the output does not depend on how the assets were scheduled. {@link Name}
+   * is reset before each asset.
+   */
+  protected void generateAssets(Collection<Lang.Asset> assets, AssetTask task) throws IOException {
+    var assetList = List.copyOf(assets);
+    var loggers = new MalLogger[assetList.size()];
+    var errors = new IOException[assetList.size()];
+    IntStream.range(0, assetList.size())
+        .parallel()
+        .forEach(
+            i -> {
+              loggers[i] = LOGGER.fork();
+              // The names must not depend on which assets the thread generated before
+              Name.reset();
+              try {
+                task.generate(loggers[i], assetList.get(i));
+              } catch (IOException e) {
+                errors[i] = e;
+              }
+            });
+    for (int i = 0; i < assetList.size(); i++) {
+      LOGGER.addAll(loggers[i]);
+      if (errors[i] != null) {
+        throw errors[i];
+      }
     }
   }
 
@@ -64,6 +107,38 @@ public abstract class Generator {
     return output;
   }
 
+  /**
+   * Returns the output directory given by the arguments 'path' and 'incremental'. Incremental
+   * output directories do not need to be empty.
+   */
+  protected OutputDirectory getOutputDirectory(Map<String, String> args) throws CompilerException {
+    boolean incremental;
+    if (!args.containsKey("incremental")) {
+      incremental = false;
+    } else {
+      switch (args.get("incremental").toLowerCase().strip()) {
+        case "true":
+          incremental = true;
+          break;
+        case "false":
+          incremental = false;
+          break;
+        default:
+          throw error("Optional argument 'incremental' must be either 'true' or 'false'");
+      }
+    }
+    if (!incremental) {
+      return new OutputDirectory(getOutputDirectory(args.get("path")), false);
+    }
+    var output = new File(args.get("path"));
+    if (!output.isAbsolute()) {
+      throw error("Argument 'path' must be an absolute path");
+    } else if (output.isFile()) {
+      throw error("Argument 'path' is a file but must be a directory");
+    }
+    return new OutputDirectory(output, true);
+  }
+
   protected CompilerException error() {
     return error(null);
   }
@@ -17,10 +17,12 @@ package org.mal_lang.compiler.lib;
 
 import com.squareup.javapoet.ClassName;
 import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
 import com.squareup.javapoet.MethodSpec;
 import com.squareup.javapoet.ParameterizedTypeName;
 import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
+import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -60,6 +62,16 @@ public abstract class JavaGenerator extends Generator {
     this.pkg = pkg;
   }
 
+  /** Writes {@code javaFile} to its package directory in {@code output}. */
+  protected static void writeJavaFile(OutputDirectory output, JavaFile javaFile)
+      throws IOException {
+    var name = String.format("%s.java", javaFile.typeSpec.name);
+    if (!javaFile.packageName.isEmpty()) {
+      name = String.format("%s/%s", javaFile.packageName.replace('.', '/'), name);
+    }
+    output.write(name, javaFile.toString());
+  }
+
   protected static String ucFirst(String str) {
     if (str.isEmpty()) {
       return str;
@@ -16,11 +16,25 @@
 package org.mal_lang.compiler.lib;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.mal_lang.compiler.lib.Distributions.Distribution;
 
+/**
+ * A compiled MAL language. Creating a {@code Lang} freezes its categories, assets and attack steps:
+ * until then their getters return copies of their collections, and after that they return
+ * unmodifiable views. Frozen collections are never changed in place, changes replace them with
+ * modified copies, so a view keeps showing the state it was returned in.
+ *
+ * <p>Each asset keeps a table of the fields and attack steps it inherits, which is built when it is
+ * first needed and cleared for the asset and its subassets whenever one of them changes.
+ */
 public class Lang {
   private Map<String, String> defines;
   private Map<String, Category> categories;
@@ -32,18 +46,24 @@ public class Lang {
       Map<String, Category> categories,
       Map<String, Asset> assets,
       List<Link> links) {
-    this.defines = defines;
-    this.categories = categories;
-    this.assets = assets;
-    this.links = links;
+    this.defines = Collections.unmodifiableMap(new LinkedHashMap<>(defines));
+    this.categories = Collections.unmodifiableMap(new LinkedHashMap<>(categories));
+    this.assets = Collections.unmodifiableMap(new LinkedHashMap<>(assets));
+    this.links = List.copyOf(links);
+    for (var category : this.categories.values()) {
+      category.freeze();
+    }
+    for (var asset : this.assets.values()) {
+      asset.freeze();
+      for (var attackStep : asset.attackSteps.values()) {
+        attackStep.freeze();
+      }
+      asset.getInheritance();
+    }
   }
 
   public Map<String, String> getDefines() {
-    var copy = new LinkedHashMap<String, String>();
-    for (var entry : this.defines.entrySet()) {
-      copy.put(entry.getKey(), entry.getValue());
-    }
-    return copy;
+    return this.defines;
   }
 
   public String getDefine(String key) {
@@ -51,11 +71,7 @@ public class Lang {
   }
 
   public Map<String, Category> getCategories() {
-    var copy = new LinkedHashMap<String, Category>();
-    for (var entry : this.categories.entrySet()) {
-      copy.put(entry.getKey(), entry.getValue());
-    }
-    return copy;
+    return this.categories;
   }
 
   public Category getCategory(String name) {
@@ -63,11 +79,7 @@ public class Lang {
   }
 
   public Map<String, Asset> getAssets() {
-    var copy = new LinkedHashMap<String, Asset>();
-    for (var entry : this.assets.entrySet()) {
-      copy.put(entry.getKey(), entry.getValue());
-    }
-    return copy;
+    return this.assets;
   }
 
   public Asset getAsset(String name) {
@@ -75,13 +87,14 @@ public class Lang {
   }
 
   public List<Link> getLinks() {
-    return List.copyOf(this.links);
+    return this.links;
   }
 
   public static class Category {
     private String name;
     private Map<String, String> meta;
     private Map<String, Asset> assets;
+    private boolean frozen;
 
     public Category(String name) {
       this.name = name;
@@ -98,11 +111,10 @@ public class Lang {
     }
 
     public Map<String, Asset> getAssets() {
-      var copy = new LinkedHashMap<String, Asset>();
-      for (var entry : this.assets.entrySet()) {
-        copy.put(entry.getKey(), entry.getValue());
+      if (this.frozen) {
+        return Collections.unmodifiableMap(this.assets);
       }
-      return copy;
+      return new LinkedHashMap<>(this.assets);
     }
 
     public Asset getAsset(String name) {
@@ -110,8 +122,15 @@ public class Lang {
     }
 
     public void addAsset(Asset asset) {
+      if (this.frozen) {
+        this.assets = new LinkedHashMap<>(this.assets);
+      }
       this.assets.put(asset.getName(), asset);
     }
+
+    private void freeze() {
+      this.frozen = true;
+    }
   }
 
   public static class Asset {
@@ -124,6 +143,9 @@ public class Lang {
     private Map<String, AttackStep> attackSteps;
     private Map<String, StepExpr> variables;
     private Map<String, StepExpr> reverseVariables;
+    private List<Asset> subAssets;
+    private Inheritance inheritance;
+    private boolean frozen;
 
     public Asset(String name, boolean isAbstract, Category category) {
       this.name = name;
@@ -134,6 +156,7 @@ public class Lang {
       this.attackSteps = new LinkedHashMap<>();
       this.variables = new LinkedHashMap<>();
       this.reverseVariables = new LinkedHashMap<>();
+      this.subAssets = new ArrayList<>();
     }
 
     public void addVariable(String name, StepExpr expr) {
@@ -177,55 +200,128 @@ public class Lang {
     }
 
     public void setSuperAsset(Asset superAsset) {
+      if (this.superAsset != null) {
+        this.superAsset.subAssets.remove(this);
+      }
       this.superAsset = superAsset;
+      if (superAsset != null) {
+        superAsset.subAssets.add(this);
+      }
+      invalidate();
+    }
+
+    /** Returns true if this asset is {@code other} or extends it. */
+    public boolean isSubTypeOf(Asset other) {
+      var ancestors = getInheritance().ancestors;
+      int depth = other.getInheritance().ancestors.length - 1;
+      return depth < ancestors.length && ancestors[depth] == other;
     }
 
     public Map<String, Field> getFields() {
-      var copy = new LinkedHashMap<String, Field>();
-      for (var entry : this.fields.entrySet()) {
-        copy.put(entry.getKey(), entry.getValue());
+      if (this.frozen) {
+        return Collections.unmodifiableMap(this.fields);
       }
-      return copy;
+      return new LinkedHashMap<>(this.fields);
     }
 
     public Field getField(String name) {
-      if (this.fields.containsKey(name)) {
-        return this.fields.get(name);
-      }
-      if (this.superAsset != null) {
-        return this.superAsset.getField(name);
-      }
-      return null;
+      return getInheritance().fields.get(name);
     }
 
     public void addField(Field field) {
+      if (this.frozen) {
+        this.fields = new LinkedHashMap<>(this.fields);
+      }
       this.fields.put(field.getName(), field);
+      invalidate();
     }
 
     public Map<String, AttackStep> getAttackSteps() {
-      var copy = new LinkedHashMap<String, AttackStep>();
-      for (var entry : this.attackSteps.entrySet()) {
-        copy.put(entry.getKey(), entry.getValue());
+      if (this.frozen) {
+        return Collections.unmodifiableMap(this.attackSteps);
       }
-      return copy;
+      return new LinkedHashMap<>(this.attackSteps);
     }
 
     public AttackStep getAttackStep(String name) {
-      if (this.attackSteps.containsKey(name)) {
-        return this.attackSteps.get(name);
-      }
-      if (this.superAsset != null) {
-        return this.superAsset.getAttackStep(name);
-      }
-      return null;
+      return getInheritance().attackSteps.get(name);
     }
 
     public void addAttackStep(AttackStep attackStep) {
+      if (this.frozen) {
+        this.attackSteps = new LinkedHashMap<>(this.attackSteps);
+      }
       this.attackSteps.put(attackStep.getName(), attackStep);
+      invalidate();
     }
 
     public AttackStep removeAttackStep(AttackStep attackStep) {
-      return this.attackSteps.remove(attackStep.getName());
+      if (this.frozen) {
+        this.attackSteps = new LinkedHashMap<>(this.attackSteps);
+      }
+      var removed = this.attackSteps.remove(attackStep.getName());
+      invalidate();
+      return removed;
+    }
+
+    private void freeze() {
+      this.frozen = true;
+    }
+
+    private Inheritance getInheritance() {
+      var inheritance = this.inheritance;
+      if (inheritance == null) {
+        inheritance =
+            new Inheritance(
+                this, this.superAsset == null ? null : this.superAsset.getInheritance());
+        this.inheritance = inheritance;
+      }
+      return inheritance;
+    }
+
+    private void invalidate() {
+      if (this.inheritance != null) {
+        this.inheritance = null;
+        for (var subAsset : this.subAssets) {
+          subAsset.invalidate();
+        }
+      }
+    }
+  }
+
+  /**
+   * The fields and attack steps of an asset including inherited ones, the tags of each attack step
+   * including those of the attack steps it overrides, and the ancestors of the asset starting with
+   * the root, so that {@code ancestors[i]} is the only possible supertype at depth {@code i}.
+   */
+  private static class Inheritance {
+    public final Asset[] ancestors;
+    public final Map<String, Field> fields;
+    public final Map<String, AttackStep> attackSteps;
+    public final Map<String, Set<String>> tags;
+
+    public Inheritance(Asset asset, Inheritance parent) {
+      if (parent == null) {
+        this.ancestors = new Asset[] {asset};
+        this.fields = new HashMap<>(asset.fields);
+        this.attackSteps = new HashMap<>(asset.attackSteps);
+        this.tags = new HashMap<>();
+      } else {
+        this.ancestors = Arrays.copyOf(parent.ancestors, parent.ancestors.length + 1);
+        this.ancestors[parent.ancestors.length] = asset;
+        this.fields = new HashMap<>(parent.fields);
+        this.fields.putAll(asset.fields);
+        this.attackSteps = new HashMap<>(parent.attackSteps);
+        this.attackSteps.putAll(asset.attackSteps);
+        this.tags = new HashMap<>(parent.tags);
+      }
+      for (var attackStep : asset.attackSteps.values()) {
+        var tags = new HashSet<>(attackStep.tags);
+        if (parent != null && parent.tags.containsKey(attackStep.name)) {
+          tags.addAll(parent.tags.get(attackStep.name));
+        }
+        this.tags.put(attackStep.name, tags);
+      }
     }
   }
 
@@ -336,6 +432,7 @@ public class Lang {
     private List<StepExpr> requires;
     private List<StepExpr> reaches;
     private List<StepExpr> parentSteps;
+    private boolean frozen;
 
     public AttackStep(
         String name, AttackStepType type, Asset asset, boolean inheritsReaches, CIA cia) {
@@ -379,18 +476,21 @@ public class Lang {
       if (this.hasTag(tag)) {
         return true;
       }
-      if (!this.hasParent()) {
+      if (!this.asset.hasSuperAsset()) {
         return false;
       }
-      return this.getAsset().getSuperAsset().getAttackStep(this.getName()).hasInheritedTag(tag);
+      var tags = this.asset.getSuperAsset().getInheritance().tags.get(this.name);
+      return tags != null && tags.contains(tag);
     }
 
     public List<String> getTags() {
-      return List.copyOf(this.tags);
+      return view(this.tags);
     }
 
     public void addTag(String tag) {
+      this.tags = writable(this.tags);
       this.tags.add(tag);
+      this.asset.invalidate();
     }
 
     public boolean hasCIA() {
@@ -414,34 +514,39 @@ public class Lang {
     }
 
     public List<StepExpr> getRequires() {
-      return List.copyOf(this.requires);
+      return view(this.requires);
     }
 
     public void addRequires(StepExpr expr) {
+      this.requires = writable(this.requires);
       this.requires.add(expr);
     }
 
     public List<StepExpr> getReaches() {
-      return List.copyOf(this.reaches);
+      return view(this.reaches);
     }
 
     public void addReaches(StepExpr expr) {
+      this.reaches = writable(this.reaches);
       this.reaches.add(expr);
     }
 
     public boolean removeReaches(StepExpr expr) {
+      this.reaches = writable(this.reaches);
       return this.reaches.remove(expr);
     }
 
     public List<StepExpr> getParentSteps() {
-      return List.copyOf(this.parentSteps);
+      return view(this.parentSteps);
     }
 
     public void addParentStep(StepExpr expr) {
+      this.parentSteps = writable(this.parentSteps);
       this.parentSteps.add(expr);
     }
 
     public boolean removeParentStep(StepExpr expr) {
+      this.parentSteps = writable(this.parentSteps);
       return this.parentSteps.remove(expr);
     }
 
@@ -457,6 +562,24 @@ public class Lang {
       return this.asset.hasSuperAsset()
           && this.asset.getSuperAsset().getAttackStep(this.name) != null;
     }
+
+    private <T> List<T> view(List<T> list) {
+      if (this.frozen) {
+        return Collections.unmodifiableList(list);
+      }
+      return List.copyOf(list);
+    }
+
+    private <T> List<T> writable(List<T> list) {
+      if (this.frozen) {
+        return new ArrayList<>(list);
+      }
+      return list;
+    }
+
+    private void freeze() {
+      this.frozen = true;
+    }
   }
 
   public static class CIA {
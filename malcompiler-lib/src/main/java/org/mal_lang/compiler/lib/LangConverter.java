@@ -28,9 +28,9 @@ public class LangConverter {
   private List<AST.Association> astAssociations = new ArrayList<>();
   private Map<String, String> astDefines = new LinkedHashMap<>();
 
-  private LangConverter(AST ast, boolean verbose, boolean debug) {
+  private LangConverter(AST ast, MalLogger LOGGER) {
     Locale.setDefault(Locale.ROOT);
-    LOGGER = new MalLogger("LANG_CONVERTER", verbose, debug);
+    this.LOGGER = LOGGER;
     // Collect categories
     var allAstCategories = ast.getCategories();
     for (var astCategory : allAstCategories) {
@@ -54,7 +54,12 @@ public class LangConverter {
   }
 
   public static Lang convert(AST ast, boolean verbose, boolean debug) {
-    return new LangConverter(ast, verbose, debug).convertLog();
+    return new LangConverter(ast, new MalLogger("LANG_CONVERTER", verbose, debug)).convertLog();
+  }
+
+  /** Converts {@code ast} and passes the messages of the converter to {@code out}. */
+  public static Lang convert(AST ast, MalLogger out) {
+    return new LangConverter(ast, new MalLogger("LANG_CONVERTER", out)).convertLog();
   }
 
   private Lang convertLog() {
@@ -329,20 +334,10 @@ public class LangConverter {
     }
   }
 
-  private static boolean isSubTypeOf(Lang.Asset a1, Lang.Asset a2) {
-    if (a1 == a2) {
-      return true;
-    } else if (!a1.hasSuperAsset()) {
-      return false;
-    } else {
-      return isSubTypeOf(a1.getSuperAsset(), a2);
-    }
-  }
-
   private static Lang.Asset leastUpperBound(Lang.Asset a1, Lang.Asset a2) {
-    if (isSubTypeOf(a1, a2)) {
+    if (a1.isSubTypeOf(a2)) {
       return a2;
-    } else if (isSubTypeOf(a2, a1)) {
+    } else if (a2.isSubTypeOf(a1)) {
       return a1;
     } else if (!a1.hasSuperAsset() && !a2.hasSuperAsset()) {
       return null;
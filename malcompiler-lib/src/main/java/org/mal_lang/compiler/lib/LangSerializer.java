@@ -0,0 +1,686 @@
+/*
+ * Copyright 2019 Foreseeti AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mal_lang.compiler.lib;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.mal_lang.compiler.lib.Distributions.Distribution;
+
+/**
+ * Reads and writes compiled MAL languages in the binary {@code .malc} format, so that a {@link
+ * Lang} can be loaded without parsing and analyzing its sources again.
+ *
+ * <p>A file starts with a header and a table of all strings, followed by the categories, assets,
+ * links, fields and attack steps of the language. These are referred to by their index in that
+ * order, and step expressions are stored once each, children first, so expressions shared between
+ * attack steps are shared in the loaded language as well.
+ */
+public final class LangSerializer {
+  public static final String SUFFIX = ".malc";
+  private static final int MAGIC = 0x4d414c43;
+  private static final int FORMAT_VERSION = 1;
+
+  private LangSerializer() {}
+
+  /** Writes {@code lang} to {@code file}. */
+  public static void write(Lang lang, File file) throws IOException {
+    Files.write(file.toPath(), serialize(lang));
+  }
+
+  /** Reads the language in {@code file}, which is mapped into memory while it is read. */
+  public static Lang read(File file) throws IOException {
+    try (var channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      return deserialize(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  /** Returns {@code lang} in the {@code .malc} format. */
+  public static byte[] serialize(Lang lang) {
+    try {
+      return new Writer(lang).write();
+    } catch (IOException e) {
+      // Only written to memory
+      throw new RuntimeException(e);
+    }
+  }
+
+  /** Reads a language in the {@code .malc} format from the remaining bytes of {@code buffer}. */
+  public static Lang deserialize(ByteBuffer buffer) throws IOException {
+    try {
+      return new Reader(buffer).read();
+    } catch (BufferUnderflowException
+        | IndexOutOfBoundsException
+        | IllegalArgumentException
+        | NegativeArraySizeException e) {
+      throw new IOException("Truncated or corrupt .malc file", e);
+    }
+  }
+
+  // Tags of the expression subclasses
+  private static final int TTC_ADD = 0;
+  private static final int TTC_SUB = 1;
+  private static final int TTC_MUL = 2;
+  private static final int TTC_DIV = 3;
+  private static final int TTC_POW = 4;
+  private static final int TTC_FUNC = 5;
+  private static final int TTC_NUM = 6;
+  private static final int UNION = 0;
+  private static final int INTERSECTION = 1;
+  private static final int DIFFERENCE = 2;
+  private static final int COLLECT = 3;
+  private static final int TRANSITIVE = 4;
+  private static final int FIELD = 5;
+  private static final int ATTACK_STEP = 6;
+  private static final int CALL = 7;
+
+  private static class Writer {
+    private final Lang lang;
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream(bytes);
+    private final Map<String, Integer> strings = new LinkedHashMap<>();
+    private final Map<Lang.Category, Integer> categories = new HashMap<>();
+    private final Map<Lang.Asset, Integer> assets = new HashMap<>();
+    private final Map<Lang.Link, Integer> links = new HashMap<>();
+    private final Map<Lang.Field, Integer> fields = new HashMap<>();
+    private final Map<Lang.AttackStep, Integer> attackSteps = new HashMap<>();
+    private final Map<Lang.StepExpr, Integer> exprs = new IdentityHashMap<>();
+    private final List<Lang.StepExpr> exprList = new ArrayList<>();
+
+    public Writer(Lang lang) {
+      this.lang = lang;
+    }
+
+    public byte[] write() throws IOException {
+      index();
+      writeBody();
+      out.flush();
+      var body = bytes.toByteArray();
+      var file = new ByteArrayOutputStream(body.length + 16 * strings.size());
+      var header = new DataOutputStream(file);
+      header.writeInt(MAGIC);
+      header.writeInt(FORMAT_VERSION);
+      header.writeInt(strings.size());
+      for (var string : strings.keySet()) {
+        var utf8 = string.getBytes(StandardCharsets.UTF_8);
+        header.writeInt(utf8.length);
+        header.write(utf8);
+      }
+      header.write(body);
+      header.flush();
+      return file.toByteArray();
+    }
+
+    private void index() {
+      for (var category : lang.getCategories().values()) {
+        categories.put(category, categories.size());
+      }
+      for (var asset : lang.getAssets().values()) {
+        assets.put(asset, assets.size());
+      }
+      for (var link : lang.getLinks()) {
+        links.put(link, links.size());
+      }
+      for (var asset : lang.getAssets().values()) {
+        for (var field : asset.getFields().values()) {
+          fields.put(field, fields.size());
+        }
+        for (var attackStep : asset.getAttackSteps().values()) {
+          attackSteps.put(attackStep, attackSteps.size());
+        }
+      }
+      for (var asset : lang.getAssets().values()) {
+        for (var expr : asset.getVariables().values()) {
+          indexExpr(expr);
+        }
+        for (var expr : asset.getReverseVariables().values()) {
+          indexExpr(expr);
+        }
+        for (var attackStep : asset.getAttackSteps().values()) {
+          for (var expr : attackStep.getRequires()) {
+            indexExpr(expr);
+          }
+          for (var expr : attackStep.getReaches()) {
+            indexExpr(expr);
+          }
+          for (var expr : attackStep.getParentSteps()) {
+            indexExpr(expr);
+          }
+        }
+      }
+    }
+
+    private void indexExpr(Lang.StepExpr expr) {
+      if (exprs.containsKey(expr)) {
+        return;
+      }
+      if (expr instanceof Lang.StepBinOp) {
+        indexExpr(((Lang.StepBinOp) expr).lhs);
+        indexExpr(((Lang.StepBinOp) expr).rhs);
+      } else if (expr instanceof Lang.StepTransitive) {
+        indexExpr(((Lang.StepTransitive) expr).e);
+      }
+      exprs.put(expr, exprList.size());
+      exprList.add(expr);
+    }
+
+    private void writeBody() throws IOException {
+      writeMeta(lang.getDefines());
+
+      out.writeInt(categories.size());
+      for (var category : lang.getCategories().values()) {
+        writeString(category.getName());
+        writeMeta(category.getMeta());
+      }
+
+      out.writeInt(assets.size());
+      for (var asset : lang.getAssets().values()) {
+        writeString(asset.getName());
+        out.writeBoolean(asset.isAbstract());
+        writeIndex(categories, asset.getCategory());
+        writeMeta(asset.getMeta());
+      }
+      for (var asset : lang.getAssets().values()) {
+        writeIndex(assets, asset.getSuperAsset());
+      }
+      for (var category : lang.getCategories().values()) {
+        var categoryAssets = category.getAssets().values();
+        out.writeInt(categoryAssets.size());
+        for (var asset : categoryAssets) {
+          writeIndex(assets, asset);
+        }
+      }
+
+      out.writeInt(links.size());
+      for (var link : lang.getLinks()) {
+        writeString(link.getName());
+        writeMeta(link.getMeta());
+      }
+
+      out.writeInt(fields.size());
+      for (var asset : lang.getAssets().values()) {
+        out.writeInt(asset.getFields().size());
+        for (var field : asset.getFields().values()) {
+          writeString(field.getName());
+          writeIndex(links, field.getLink());
+          out.writeInt(field.getMin());
+          out.writeInt(field.getMax());
+        }
+      }
+      for (var asset : lang.getAssets().values()) {
+        for (var field : asset.getFields().values()) {
+          writeIndex(fields, field.getTarget());
+        }
+      }
+      for (var link : lang.getLinks()) {
+        writeIndex(fields, link.getLeftField());
+        writeIndex(fields, link.getRightField());
+      }
+
+      out.writeInt(attackSteps.size());
+      for (var asset : lang.getAssets().values()) {
+        out.writeInt(asset.getAttackSteps().size());
+        for (var attackStep : asset.getAttackSteps().values()) {
+          writeString(attackStep.getName());
+          out.writeByte(attackStep.getType().ordinal());
+          out.writeBoolean(attackStep.inheritsReaches());
+          writeCIA(attackStep.getCIA());
+          out.writeInt(attackStep.getTags().size());
+          for (var tag : attackStep.getTags()) {
+            writeString(tag);
+          }
+          writeMeta(attackStep.getMeta());
+          writeTTC(attackStep.getTTC());
+        }
+      }
+
+      out.writeInt(exprList.size());
+      for (var expr : exprList) {
+        writeStepExpr(expr);
+      }
+      for (var asset : lang.getAssets().values()) {
+        writeVariables(asset.getVariables());
+        writeVariables(asset.getReverseVariables());
+        for (var attackStep : asset.getAttackSteps().values()) {
+          writeStepExprs(attackStep.getRequires());
+          writeStepExprs(attackStep.getReaches());
+          writeStepExprs(attackStep.getParentSteps());
+        }
+      }
+    }
+
+    private void writeString(String string) throws IOException {
+      if (!strings.containsKey(string)) {
+        strings.put(string, strings.size());
+      }
+      out.writeInt(strings.get(string));
+    }
+
+    private <T> void writeIndex(Map<T, Integer> indices, T value) throws IOException {
+      if (value == null) {
+        out.writeInt(-1);
+      } else if (indices.containsKey(value)) {
+        out.writeInt(indices.get(value));
+      } else {
+        throw new IllegalStateException(
+            String.format("%s is not part of the language", value.getClass().getSimpleName()));
+      }
+    }
+
+    private void writeMeta(Map<String, String> meta) throws IOException {
+      out.writeInt(meta.size());
+      for (var entry : meta.entrySet()) {
+        writeString(entry.getKey());
+        writeString(entry.getValue());
+      }
+    }
+
+    private void writeCIA(Lang.CIA cia) throws IOException {
+      out.writeBoolean(cia != null);
+      if (cia != null) {
+        out.writeBoolean(cia.C);
+        out.writeBoolean(cia.I);
+        out.writeBoolean(cia.A);
+      }
+    }
+
+    private void writeTTC(Lang.TTCExpr ttc) throws IOException {
+      out.writeBoolean(ttc != null);
+      if (ttc != null) {
+        writeTTCExpr(ttc);
+      }
+    }
+
+    private void writeTTCExpr(Lang.TTCExpr expr) throws IOException {
+      if (expr instanceof Lang.TTCBinOp) {
+        if (expr instanceof Lang.TTCAdd) {
+          out.writeByte(TTC_ADD);
+        } else if (expr instanceof Lang.TTCSub) {
+          out.writeByte(TTC_SUB);
+        } else if (expr instanceof Lang.TTCMul) {
+          out.writeByte(TTC_MUL);
+        } else if (expr instanceof Lang.TTCDiv) {
+          out.writeByte(TTC_DIV);
+        } else if (expr instanceof Lang.TTCPow) {
+          out.writeByte(TTC_POW);
+        } else {
+          throw new IllegalStateException("Invalid TTC expression");
+        }
+        writeTTCExpr(((Lang.TTCBinOp) expr).lhs);
+        writeTTCExpr(((Lang.TTCBinOp) expr).rhs);
+      } else if (expr instanceof Lang.TTCFunc) {
+        out.writeByte(TTC_FUNC);
+        writeDistribution(((Lang.TTCFunc) expr).dist);
+      } else if (expr instanceof Lang.TTCNum) {
+        out.writeByte(TTC_NUM);
+        out.writeDouble(((Lang.TTCNum) expr).value);
+      } else {
+        throw new IllegalStateException("Invalid TTC expression");
+      }
+    }
+
+    private void writeDistribution(Distribution dist) throws IOException {
+      // Distributions are recreated by name, so the class names double as distribution names
+      writeString(dist.getClass().getSimpleName());
+      List<Double> params;
+      if (dist instanceof Distributions.Bernoulli) {
+        var bernoulli = (Distributions.Bernoulli) dist;
+        params = List.of(bernoulli.probability);
+      } else if (dist instanceof Distributions.Binomial) {
+        var binomial = (Distributions.Binomial) dist;
+        params = List.of((double) binomial.trials, binomial.probability);
+      } else if (dist instanceof Distributions.Exponential) {
+        var exponential = (Distributions.Exponential) dist;
+        params = List.of(exponential.lambda);
+      } else if (dist instanceof Distributions.Gamma) {
+        var gamma = (Distributions.Gamma) dist;
+        params = List.of(gamma.shape, gamma.scale);
+      } else if (dist instanceof Distributions.LogNormal) {
+        var logNormal = (Distributions.LogNormal) dist;
+        params = List.of(logNormal.mean, logNormal.standardDeviation);
+      } else if (dist instanceof Distributions.Pareto) {
+        var pareto = (Distributions.Pareto) dist;
+        params = List.of(pareto.min, pareto.shape);
+      } else if (dist instanceof Distributions.TruncatedNormal) {
+        var truncatedNormal = (Distributions.TruncatedNormal) dist;
+        params = List.of(truncatedNormal.mean, truncatedNormal.standardDeviation);
+      } else if (dist instanceof Distributions.Uniform) {
+        var uniform = (Distributions.Uniform) dist;
+        params = List.of(uniform.min, uniform.max);
+      } else {
+        params = List.of();
+      }
+      out.writeByte(params.size());
+      for (var param : params) {
+        out.writeDouble(param);
+      }
+    }
+
+    private void writeStepExpr(Lang.StepExpr expr) throws IOException {
+      if (expr instanceof Lang.StepUnion) {
+        out.writeByte(UNION);
+      } else if (expr instanceof Lang.StepIntersection) {
+        out.writeByte(INTERSECTION);
+      } else if (expr instanceof Lang.StepDifference) {
+        out.writeByte(DIFFERENCE);
+      } else if (expr instanceof Lang.StepCollect) {
+        out.writeByte(COLLECT);
+      } else if (expr instanceof Lang.StepTransitive) {
+        out.writeByte(TRANSITIVE);
+      } else if (expr instanceof Lang.StepField) {
+        out.writeByte(FIELD);
+      } else if (expr instanceof Lang.StepAttackStep) {
+        out.writeByte(ATTACK_STEP);
+      } else if (expr instanceof Lang.StepCall) {
+        out.writeByte(CALL);
+      } else {
+        throw new IllegalStateException("Invalid step expression");
+      }
+      writeIndex(assets, expr.subSrc);
+      writeIndex(assets, expr.src);
+      if (expr instanceof Lang.StepAttackStep) {
+        writeIndex(attackSteps, ((Lang.StepAttackStep) expr).attackStep);
+        return;
+      }
+      writeIndex(assets, expr.target);
+      writeIndex(assets, expr.subTarget);
+      if (expr instanceof Lang.StepBinOp) {
+        writeIndex(exprs, ((Lang.StepBinOp) expr).lhs);
+        writeIndex(exprs, ((Lang.StepBinOp) expr).rhs);
+      } else if (expr instanceof Lang.StepTransitive) {
+        writeIndex(exprs, ((Lang.StepTransitive) expr).e);
+      } else if (expr instanceof Lang.StepField) {
+        writeIndex(fields, ((Lang.StepField) expr).field);
+      } else {
+        writeString(((Lang.StepCall) expr).name);
+      }
+    }
+
+    private void writeStepExprs(List<Lang.StepExpr> list) throws IOException {
+      out.writeInt(list.size());
+      for (var expr : list) {
+        writeIndex(exprs, expr);
+      }
+    }
+
+    private void writeVariables(Map<String, Lang.StepExpr> variables) throws IOException {
+      out.writeInt(variables.size());
+      for (var entry : variables.entrySet()) {
+        writeString(entry.getKey());
+        writeIndex(exprs, entry.getValue());
+      }
+    }
+  }
+
+  private static class Reader {
+    private final ByteBuffer in;
+    private String[] strings;
+    private Lang.Category[] categories;
+    private Lang.Asset[] assets;
+    private Lang.Link[] links;
+    private Lang.Field[] fields;
+    private Lang.AttackStep[] attackSteps;
+    private Lang.StepExpr[] exprs;
+
+    public Reader(ByteBuffer in) {
+      this.in = in;
+    }
+
+    public Lang read() throws IOException {
+      if (in.getInt() != MAGIC) {
+        throw new IOException("Not a .malc file");
+      }
+      int version = in.getInt();
+      if (version != FORMAT_VERSION) {
+        throw new IOException(
+            String.format(
+                ".malc format version %d is not supported, expected %d", version, FORMAT_VERSION));
+      }
+      strings = new String[readCount()];
+      for (int i = 0; i < strings.length; i++) {
+        var utf8 = new byte[readCount()];
+        in.get(utf8);
+        strings[i] = new String(utf8, StandardCharsets.UTF_8);
+      }
+
+      var defines = readMeta();
+
+      categories = new Lang.Category[readCount()];
+      var categoryMap = new LinkedHashMap<String, Lang.Category>();
+      for (int i = 0; i < categories.length; i++) {
+        categories[i] = new Lang.Category(readString());
+        categories[i].getMeta().putAll(readMeta());
+        categoryMap.put(categories[i].getName(), categories[i]);
+      }
+
+      assets = new Lang.Asset[readCount()];
+      var assetMap = new LinkedHashMap<String, Lang.Asset>();
+      for (int i = 0; i < assets.length; i++) {
+        var name = readString();
+        var isAbstract = in.get() != 0;
+        assets[i] = new Lang.Asset(name, isAbstract, read(categories));
+        assets[i].getMeta().putAll(readMeta());
+        assetMap.put(name, assets[i]);
+      }
+      for (var asset : assets) {
+        asset.setSuperAsset(read(assets));
+      }
+      for (var category : categories) {
+        int count = readCount();
+        for (int i = 0; i < count; i++) {
+          category.addAsset(read(assets));
+        }
+      }
+
+      links = new Lang.Link[readCount()];
+      for (int i = 0; i < links.length; i++) {
+        links[i] = new Lang.Link(readString());
+        links[i].getMeta().putAll(readMeta());
+      }
+
+      fields = new Lang.Field[readCount()];
+      int fieldIndex = 0;
+      for (var asset : assets) {
+        int count = readCount();
+        for (int i = 0; i < count; i++) {
+          var field = new Lang.Field(readString(), asset, read(links));
+          field.setMin(in.getInt());
+          field.setMax(in.getInt());
+          asset.addField(field);
+          fields[fieldIndex++] = field;
+        }
+      }
+      for (var field : fields) {
+        field.setTarget(read(fields));
+      }
+      for (var link : links) {
+        link.setLeftField(read(fields));
+        link.setRightField(read(fields));
+      }
+
+      attackSteps = new Lang.AttackStep[readCount()];
+      int attackStepIndex = 0;
+      for (var asset : assets) {
+        int count = readCount();
+        for (int i = 0; i < count; i++) {
+          var name = readString();
+          var type = Lang.AttackStepType.values()[in.get()];
+          var inheritsReaches = in.get() != 0;
+          var attackStep = new Lang.AttackStep(name, type, asset, inheritsReaches, readCIA());
+          int tagCount = readCount();
+          for (int j = 0; j < tagCount; j++) {
+            attackStep.addTag(readString());
+          }
+          attackStep.getMeta().putAll(readMeta());
+          if (in.get() != 0) {
+            attackStep.setTTC(readTTCExpr());
+          }
+          asset.addAttackStep(attackStep);
+          attackSteps[attackStepIndex++] = attackStep;
+        }
+      }
+
+      exprs = new Lang.StepExpr[readCount()];
+      for (int i = 0; i < exprs.length; i++) {
+        exprs[i] = readStepExpr();
+      }
+      for (var asset : assets) {
+        int count = readCount();
+        for (int i = 0; i < count; i++) {
+          asset.addVariable(readString(), read(exprs));
+        }
+        count = readCount();
+        for (int i = 0; i < count; i++) {
+          asset.addReverseVariable(readString(), read(exprs));
+        }
+        for (var attackStep : asset.getAttackSteps().values()) {
+          count = readCount();
+          for (int i = 0; i < count; i++) {
+            attackStep.addRequires(read(exprs));
+          }
+          count = readCount();
+          for (int i = 0; i < count; i++) {
+            attackStep.addReaches(read(exprs));
+          }
+          count = readCount();
+          for (int i = 0; i < count; i++) {
+            attackStep.addParentStep(read(exprs));
+          }
+        }
+      }
+
+      return new Lang(defines, categoryMap, assetMap, List.of(links));
+    }
+
+    private int readCount() throws IOException {
+      return checkCount(in.getInt());
+    }
+
+    // Each element takes at least one byte, so a larger count is corrupt and must not be allocated
+    private int checkCount(int count) throws IOException {
+      if (count < 0 || count > in.remaining()) {
+        throw new IOException("Truncated or corrupt .malc file");
+      }
+      return count;
+    }
+
+    private String readString() {
+      return strings[in.getInt()];
+    }
+
+    private <T> T read(T[] values) {
+      int index = in.getInt();
+      return index == -1 ? null : values[index];
+    }
+
+    private Map<String, String> readMeta() throws IOException {
+      int count = readCount();
+      var meta = new LinkedHashMap<String, String>();
+      for (int i = 0; i < count; i++) {
+        var key = readString();
+        meta.put(key, readString());
+      }
+      return meta;
+    }
+
+    private Lang.CIA readCIA() {
+      if (in.get() == 0) {
+        return null;
+      }
+      var C = in.get() != 0;
+      var I = in.get() != 0;
+      var A = in.get() != 0;
+      return new Lang.CIA(C, I, A);
+    }
+
+    private Lang.TTCExpr readTTCExpr() throws IOException {
+      int tag = in.get();
+      switch (tag) {
+        case TTC_ADD:
+          return new Lang.TTCAdd(readTTCExpr(), readTTCExpr());
+        case TTC_SUB:
+          return new Lang.TTCSub(readTTCExpr(), readTTCExpr());
+        case TTC_MUL:
+          return new Lang.TTCMul(readTTCExpr(), readTTCExpr());
+        case TTC_DIV:
+          return new Lang.TTCDiv(readTTCExpr(), readTTCExpr());
+        case TTC_POW:
+          return new Lang.TTCPow(readTTCExpr(), readTTCExpr());
+        case TTC_FUNC:
+          {
+            var name = readString();
+            int count = checkCount(in.get());
+            var params = new ArrayList<Double>(count);
+            for (int i = 0; i < count; i++) {
+              params.add(in.getDouble());
+            }
+            try {
+              return new Lang.TTCFunc(Distributions.getDistribution(name, params));
+            } catch (RuntimeException e) {
+              throw new IOException(e.getMessage(), e);
+            }
+          }
+        case TTC_NUM:
+          return new Lang.TTCNum(in.getDouble());
+        default:
+          throw new IOException(String.format("Invalid TTC expression tag %d", tag));
+      }
+    }
+
+    private Lang.StepExpr readStepExpr() throws IOException {
+      int tag = in.get();
+      var subSrc = read(assets);
+      var src = read(assets);
+      if (tag == ATTACK_STEP) {
+        return new Lang.StepAttackStep(subSrc, src, read(attackSteps));
+      }
+      var target = read(assets);
+      var subTarget = read(assets);
+      switch (tag) {
+        case UNION:
+          return new Lang.StepUnion(subSrc, src, target, subTarget, read(exprs), read(exprs));
+        case INTERSECTION:
+          return new Lang.StepIntersection(
+              subSrc, src, target, subTarget, read(exprs), read(exprs));
+        case DIFFERENCE:
+          return new Lang.StepDifference(subSrc, src, target, subTarget, read(exprs), read(exprs));
+        case COLLECT:
+          return new Lang.StepCollect(subSrc, src, target, subTarget, read(exprs), read(exprs));
+        case TRANSITIVE:
+          return new Lang.StepTransitive(subSrc, src, target, subTarget, read(exprs));
+        case FIELD:
+          return new Lang.StepField(subSrc, src, target, subTarget, read(fields));
+        case CALL:
+          return new Lang.StepCall(subSrc, src, target, subTarget, readString());
+        default:
+          throw new IOException(String.format("Invalid step expression tag %d", tag));
+      }
+    }
+  }
+}
@@ -20,10 +20,9 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 
 public class Lexer {
   private MalLogger LOGGER;
@@ -34,40 +33,17 @@ public class Lexer {
   private int col;
   private int startLine;
   private int startCol;
-  private List<Byte> lexeme;
+  // The current lexeme is input[lexemeStart] up to input[index - 1]
+  private int lexemeStart;
+  // Unescaped bytes of the current string, only used for strings containing escape sequences
+  private byte[] buffer = new byte[64];
+  private int bufferLength;
   private List<Token> comments = new ArrayList<>();
   private boolean eof;
-
-  private static Map<String, TokenType> keywords;
-
-  static {
-    keywords = new HashMap<>();
-    keywords.put("include", TokenType.INCLUDE);
-    keywords.put("info", TokenType.INFO);
-    keywords.put("category", TokenType.CATEGORY);
-    keywords.put("abstract", TokenType.ABSTRACT);
-    keywords.put("asset", TokenType.ASSET);
-    keywords.put("extends", TokenType.EXTENDS);
-    keywords.put("associations", TokenType.ASSOCIATIONS);
-    keywords.put("let", TokenType.LET);
-    keywords.put("E", TokenType.EXIST);
-    keywords.put("C", TokenType.C);
-    keywords.put("I", TokenType.I);
-    keywords.put("A", TokenType.A);
-  }
-
-  private static Map<String, Byte> escapeSequences;
-
-  static {
-    escapeSequences = new HashMap<>();
-    escapeSequences.put("\\b", (byte) '\b');
-    escapeSequences.put("\\n", (byte) '\n');
-    escapeSequences.put("\\t", (byte) '\t');
-    escapeSequences.put("\\r", (byte) '\r');
-    escapeSequences.put("\\f", (byte) '\f');
-    escapeSequences.put("\\\"", (byte) '"');
-    escapeSequences.put("\\\\", (byte) '\\');
-  }
+  private final SymbolTable symbols = new SymbolTable();
+  // The tokens returned by a lexer created from a list of tokens, null otherwise
+  private List<Token> tokens;
+  private int tokenIndex;
 
   public Lexer(File file) throws IOException {
     this(file, file.getName(), false, false);
@@ -82,25 +58,81 @@ public class Lexer {
   }
 
   public Lexer(File file, String relativeName, boolean verbose, boolean debug) throws IOException {
-    Locale.setDefault(Locale.ROOT);
-    LOGGER = new MalLogger("LEXER", verbose, debug);
+    this(relativeName, new MalLogger("LEXER", verbose, debug));
+    readInput(file, relativeName);
+  }
+
+  /** Creates a lexer of {@code file} that passes the messages it prints to {@code out}. */
+  public Lexer(File file, String relativeName, MalLogger out) throws IOException {
+    this(relativeName, new MalLogger("LEXER", out));
+    readInput(file, relativeName);
+  }
+
+  /**
+   * Creates a lexer of {@code file} that logs to {@code LOGGER}, e.g. a logger that passes the
+   * messages to the parser of the file, so that they are printed together with its messages.
+   */
+  static Lexer withLogger(File file, String relativeName, MalLogger LOGGER) throws IOException {
+    var lexer = new Lexer(relativeName, LOGGER);
+    lexer.readInput(file, relativeName);
+    return lexer;
+  }
+
+  private void readInput(File file, String relativeName) throws IOException {
     try {
-      LOGGER.debug(String.format("Creating lexer with file '%s'", relativeName));
       if (!file.exists()) {
         throw new IOException(String.format("%s: No such file or directory", relativeName));
       }
-      this.filename = relativeName;
-      this.input = Files.readAllBytes(file.toPath());
-      this.index = 0;
-      this.line = 1;
-      this.col = 1;
-      this.eof = input.length == 0;
+      setInput(Files.readAllBytes(file.toPath()));
     } catch (IOException e) {
       LOGGER.print();
       throw e;
     }
   }
 
+  /** Creates a lexer of {@code input}, which is reported as the contents of {@code filename}. */
+  public Lexer(byte[] input, String filename) {
+    this(input, filename, false, false);
+  }
+
+  public Lexer(byte[] input, String filename, boolean verbose, boolean debug) {
+    this(filename, new MalLogger("LEXER", verbose, debug));
+    setInput(input);
+  }
+
+  /** Creates a lexer of {@code input} that passes the messages it prints to {@code out}. */
+  public Lexer(byte[] input, String filename, MalLogger out) {
+    this(filename, new MalLogger("LEXER", out));
+    setInput(input);
+  }
+
+  public Lexer(CharSequence input, String filename) {
+    this(input.toString().getBytes(StandardCharsets.UTF_8), filename);
+  }
+
+  /**
+   * Creates a lexer that returns {@code tokens} again, e.g. the tokens returned by {@link
+   * #tokenize()}. {@code tokens} must end with an EOF token.
+   */
+  public Lexer(List<Token> tokens) {
+    this.tokens = tokens;
+  }
+
+  private Lexer(String filename, MalLogger LOGGER) {
+    Locale.setDefault(Locale.ROOT);
+    this.LOGGER = LOGGER;
+    LOGGER.debug(String.format("Creating lexer with file '%s'", filename));
+    this.filename = filename;
+  }
+
+  private void setInput(byte[] input) {
+    this.input = input;
+    this.index = 0;
+    this.line = 1;
+    this.col = 1;
+    this.eof = input.length == 0;
+  }
+
   public static boolean syntacticallyEqual(Lexer l1, Lexer l2) {
     try {
       var tok1 = l1.next();
@@ -121,18 +153,46 @@ public class Lexer {
     }
   }
 
+  byte[] getInput() {
+    return input;
+  }
+
   private String getLexemeString() {
-    byte[] byteArray = new byte[lexeme.size()];
-    for (int i = 0; i < lexeme.size(); i++) {
-      byteArray[i] = lexeme.get(i).byteValue();
-    }
-    return new String(byteArray, StandardCharsets.UTF_8);
+    return new String(input, lexemeStart, index - lexemeStart, StandardCharsets.UTF_8);
   }
 
   public Token next() throws CompilerException {
+    if (tokens != null) {
+      var token = tokens.get(tokenIndex);
+      if (token.type != TokenType.EOF) {
+        tokenIndex++;
+      }
+      return token;
+    }
+    while (true) {
+      Token token = nextOrSkip();
+      if (token != null) {
+        return token;
+      }
+    }
+  }
+
+  /** Returns all remaining tokens, ending with the EOF token. */
+  public List<Token> tokenize() throws CompilerException {
+    var result = new ArrayList<Token>();
+    Token token;
+    do {
+      token = next();
+      result.add(token);
+    } while (token.type != TokenType.EOF);
+    return result;
+  }
+
+  /** Lexes the next token, or returns null after skipping whitespace or a comment. */
+  private Token nextOrSkip() throws CompilerException {
     startLine = line;
     startCol = col;
-    lexeme = new ArrayList<>();
+    lexemeStart = index;
     if (eof) {
       LOGGER.print();
       return createToken(TokenType.EOF);
@@ -143,7 +203,8 @@ public class Lexer {
       case '\t':
       case '\r':
       case '\n':
-        return next();
+        skipWhitespace();
+        return null;
       case '#':
         return createToken(TokenType.HASH);
       case ':':
@@ -163,7 +224,7 @@ public class Lexer {
         if (peek('>')) {
           consume();
           return createToken(TokenType.OVERRIDE);
-        } else if (peek("->")) {
+        } else if (peek('-', '>')) {
           consume(2);
           return createToken(TokenType.RARROW);
         } else {
@@ -193,7 +254,7 @@ public class Lexer {
       case ',':
         return createToken(TokenType.COMMA);
       case '<':
-        if (peek("--")) {
+        if (peek('-', '-')) {
           consume(2);
           return createToken(TokenType.LARROW);
         } else if (peek('-')) {
@@ -220,10 +281,10 @@ public class Lexer {
             consume();
           }
           createComment(TokenType.SINGLECOMMENT);
-          return next();
+          return null;
         } else if (peek('*')) {
           consume();
-          while (!peek("*/")) {
+          while (!peek('*', '/')) {
             if (eof) {
               throw exception(
                   String.format(
@@ -234,7 +295,7 @@ public class Lexer {
           }
           consume(2);
           createComment(TokenType.MULTICOMMENT);
-          return next();
+          return null;
         } else {
           return createToken(TokenType.DIVIDE);
         }
@@ -250,53 +311,69 @@ public class Lexer {
       case '^':
         return createToken(TokenType.POWER);
       case '"':
-        while (!peek('"')) {
-          if (peek('\\')) {
-            consume();
-            if (eof || peek('\n')) {
+        {
+          // Strings without escape sequences are decoded straight from the input
+          int contentStart = index;
+          boolean escaped = false;
+          while (!peek('"')) {
+            if (peek('\\')) {
+              if (!escaped) {
+                escaped = true;
+                bufferLength = 0;
+                append(contentStart, index);
+              }
+              consume();
+              if (eof || peek('\n')) {
+                throw exception(
+                    String.format(
+                        "Unterminated string starting at %s",
+                        new Position(filename, startLine, startCol)));
+              }
+              if (input[index] < 32 || input[index] > 126) {
+                throw exception(String.format("Invalid escape byte 0x%02X", input[index]));
+              }
+              byte escape = consume();
+              int unescaped = unescape(escape);
+              if (unescaped < 0) {
+                throw exception(String.format("Invalid escape sequence '\\%c'", (char) escape));
+              }
+              append((byte) unescaped);
+            } else if (eof || peek('\n')) {
               throw exception(
                   String.format(
                       "Unterminated string starting at %s",
                       new Position(filename, startLine, startCol)));
+            } else {
+              byte b = consume();
+              if (escaped) {
+                append(b);
+              }
             }
-            if (input[index] < 32 || input[index] > 126) {
-              throw exception(String.format("Invalid escape byte 0x%02X", input[index]));
-            }
-            consume();
-            var lexemeString = getLexemeString();
-            String escapeSequence = lexemeString.substring(lexemeString.length() - 2);
-            lexeme = lexeme.subList(0, lexeme.size() - 2);
-            if (!escapeSequences.containsKey(escapeSequence)) {
-              throw exception(String.format("Invalid escape sequence '%s'", escapeSequence));
-            }
-            lexeme.add(escapeSequences.get(escapeSequence));
-          } else if (eof || peek('\n')) {
-            throw exception(
-                String.format(
-                    "Unterminated string starting at %s",
-                    new Position(filename, startLine, startCol)));
-          } else {
-            consume();
           }
+          String value =
+              escaped
+                  ? new String(buffer, 0, bufferLength, StandardCharsets.UTF_8)
+                  : new String(input, contentStart, index - contentStart, StandardCharsets.UTF_8);
+          consume();
+          return createToken(TokenType.STRING, value);
         }
-        consume();
-        return createToken(TokenType.STRING);
       default:
         if (isAlpha(c)) {
           while (isAlphaNumeric()) {
             consume();
           }
-          var lexemeString = getLexemeString();
-          if (keywords.containsKey(lexemeString)) {
-            return createToken(keywords.get(lexemeString));
+          int symbol = symbols.lookup(input, lexemeStart, index);
+          TokenType type = symbols.type(symbol);
+          if (type == TokenType.ID) {
+            return createToken(type, symbols.name(symbol));
           } else {
-            return createToken(TokenType.ID);
+            return createToken(type);
           }
         } else if (isDigit(c)) {
           while (isDigit()) {
             consume();
           }
-          if (peek("..") || !peek('.')) {
+          if (peek('.', '.') || !peek('.')) {
             return createToken(TokenType.INT);
           } else if (peek('.')) {
             consume();
@@ -331,24 +408,16 @@ public class Lexer {
       col++;
     }
     var c = input[index++];
-    lexeme.add(c);
     if (index == input.length) {
       eof = true;
     }
     return c;
   }
 
-  private boolean peek(String s) {
-    var bytes = s.getBytes();
-    if (input.length - index < bytes.length) {
-      return false;
-    }
-    for (int i = 0; i < bytes.length; i++) {
-      if (bytes[i] != input[index + i]) {
-        return false;
-      }
-    }
-    return true;
+  private boolean peek(char first, char second) {
+    return input.length - index >= 2
+        && input[index] == (byte) first
+        && input[index + 1] == (byte) second;
   }
 
   private boolean peek(char c) {
@@ -363,100 +432,160 @@ public class Lexer {
     }
   }
 
-  private void createComment(TokenType type) {
-    var lexemeString = getLexemeString();
-    lexemeString = lexemeString.substring(2, lexemeString.length());
-    if (type == TokenType.MULTICOMMENT) {
-      lexemeString = lexemeString.substring(0, lexemeString.length() - 2);
+  private void skipWhitespace() {
+    while (peek(' ') || peek('\t') || peek('\r') || peek('\n')) {
+      consume();
     }
-    comments.add(new Token(type, filename, startLine, startCol, lexemeString));
   }
 
-  private Token createRawToken(TokenType type) {
-    switch (type) {
-      case INT:
-        return new Token(type, filename, startLine, startCol, Integer.parseInt(getLexemeString()));
-      case FLOAT:
-        return new Token(
-            type, filename, startLine, startCol, Double.parseDouble(getLexemeString()));
-      case ID:
-        return new Token(type, filename, startLine, startCol, getLexemeString());
-      case STRING:
-        var lexemeString = getLexemeString();
-        return new Token(
+  private void append(byte b) {
+    if (bufferLength == buffer.length) {
+      buffer = Arrays.copyOf(buffer, buffer.length * 2);
+    }
+    buffer[bufferLength++] = b;
+  }
+
+  private void append(int from, int to) {
+    for (int i = from; i < to; i++) {
+      append(input[i]);
+    }
+  }
+
+  private static int unescape(byte escape) {
+    switch (escape) {
+      case 'b':
+        return '\b';
+      case 'n':
+        return '\n';
+      case 't':
+        return '\t';
+      case 'r':
+        return '\r';
+      case 'f':
+        return '\f';
+      case '"':
+        return '"';
+      case '\\':
+        return '\\';
+      default:
+        return -1;
+    }
+  }
+
+  private int parseInt() {
+    int value = 0;
+    for (int i = lexemeStart; i < index; i++) {
+      int digit = input[i] - '0';
+      if (value > (Integer.MAX_VALUE - digit) / 10) {
+        // Out of range, let Integer.parseInt report it
+        return Integer.parseInt(getLexemeString());
+      }
+      value = value * 10 + digit;
+    }
+    return value;
+  }
+
+  private void createComment(TokenType type) {
+    int start = lexemeStart + 2;
+    int end = type == TokenType.MULTICOMMENT ? index - 2 : index;
+    comments.add(
+        new Token(
             type,
             filename,
             startLine,
             startCol,
-            lexemeString.substring(1, lexemeString.length() - 1));
-      default:
-        return new Token(type, filename, startLine, startCol);
-    }
+            new String(input, start, end - start, StandardCharsets.UTF_8)));
   }
 
   private void readTrailingComments() throws CompilerException {
     // Trailing comments are all comments followed on the same line as the previous
     // token, including comments that follow previous trailing comments by exactly 1
     // line.
-    startLine = line;
-    startCol = col;
-    lexeme = new ArrayList<>();
-    if (eof || peek('\n')) {
-      return;
-    }
-    byte c = consume();
-    switch (c) {
-      case ' ':
-      case '\t':
-        readTrailingComments();
+    while (true) {
+      startLine = line;
+      startCol = col;
+      lexemeStart = index;
+      if (eof || peek('\n')) {
         return;
-      case '/':
-        if (peek('/')) {
-          while (!eof && !peek('\n') && !peek('\r')) {
-            consume();
-          }
-          createComment(TokenType.SINGLECOMMENT);
-          if (peek("\r\n")) {
-            consume(2);
-            readTrailingComments();
-          } else if (peek('\n')) {
-            consume();
-            readTrailingComments();
-          }
-          return;
-        } else if (peek('*')) {
-          consume();
-          while (!peek("*/")) {
-            if (eof) {
-              throw exception(
-                  String.format(
-                      "Unterminated comment starting at %s",
-                      new Position(filename, startLine, startCol)));
+      }
+      byte c = consume();
+      switch (c) {
+        case ' ':
+        case '\t':
+          continue;
+        case '/':
+          if (peek('/')) {
+            while (!eof && !peek('\n') && !peek('\r')) {
+              consume();
+            }
+            createComment(TokenType.SINGLECOMMENT);
+            if (peek('\r', '\n')) {
+              consume(2);
+              continue;
+            } else if (peek('\n')) {
+              consume();
+              continue;
             }
+            return;
+          } else if (peek('*')) {
             consume();
+            while (!peek('*', '/')) {
+              if (eof) {
+                throw exception(
+                    String.format(
+                        "Unterminated comment starting at %s",
+                        new Position(filename, startLine, startCol)));
+              }
+              consume();
+            }
+            consume(2);
+            createComment(TokenType.MULTICOMMENT);
+            continue;
           }
-          consume(2);
-          createComment(TokenType.MULTICOMMENT);
-          readTrailingComments();
+          // Not a comment, we want to fall-through
+        default:
+          index--;
+          col--;
+          eof = false;
           return;
-        }
-        // Not a comment, we want to fall-through
-      default:
-        index--;
-        col--;
-        eof = false;
-        return;
+      }
     }
   }
 
   private Token createToken(TokenType type) throws CompilerException {
-    var token = createRawToken(type);
+    switch (type) {
+      case INT:
+        return createToken(type, "", 0.0, parseInt());
+      case FLOAT:
+        return createToken(type, "", Double.parseDouble(getLexemeString()), 0);
+      default:
+        return createToken(type, "", 0.0, 0);
+    }
+  }
+
+  private Token createToken(TokenType type, String stringValue) throws CompilerException {
+    return createToken(type, stringValue, 0.0, 0);
+  }
+
+  private Token createToken(TokenType type, String stringValue, double doubleValue, int intValue)
+      throws CompilerException {
+    int tokenLine = startLine;
+    int tokenCol = startCol;
     var preComments = List.copyOf(comments);
     comments.clear();
     readTrailingComments();
     var postComments = List.copyOf(comments);
     comments.clear();
-    return new Token(token, preComments, postComments);
+    return new Token(
+        type,
+        filename,
+        tokenLine,
+        tokenCol,
+        stringValue,
+        doubleValue,
+        intValue,
+        preComments,
+        postComments);
   }
 
   private CompilerException exception(String msg) {
@@ -496,4 +625,110 @@ public class Lexer {
   private boolean isAlphaNumeric(byte c) {
     return isDigit(c) || isAlpha(c);
   }
+
+  /**
+   * Open addressing hash table of the identifiers and keywords of a file. Looking up an identifier
+   * compares it to the input in place, so only the first occurrence of each identifier creates a
+   * string, and all tokens of the same identifier share it.
+   */
+  private static final class SymbolTable {
+    private String[] names = new String[64];
+    private TokenType[] types = new TokenType[64];
+    private int size = 0;
+
+    SymbolTable() {
+      put("include", TokenType.INCLUDE);
+      put("info", TokenType.INFO);
+      put("category", TokenType.CATEGORY);
+      put("abstract", TokenType.ABSTRACT);
+      put("asset", TokenType.ASSET);
+      put("extends", TokenType.EXTENDS);
+      put("associations", TokenType.ASSOCIATIONS);
+      put("let", TokenType.LET);
+      put("E", TokenType.EXIST);
+      put("C", TokenType.C);
+      put("I", TokenType.I);
+      put("A", TokenType.A);
+    }
+
+    String name(int symbol) {
+      return names[symbol];
+    }
+
+    TokenType type(int symbol) {
+      return types[symbol];
+    }
+
+    /** Returns the symbol of input[start] up to input[end - 1], adding it as an identifier. */
+    int lookup(byte[] input, int start, int end) {
+      int hash = 0;
+      for (int i = start; i < end; i++) {
+        hash = 31 * hash + input[i];
+      }
+      int mask = names.length - 1;
+      int slot = mix(hash) & mask;
+      while (names[slot] != null) {
+        if (equals(names[slot], input, start, end)) {
+          return slot;
+        }
+        slot = (slot + 1) & mask;
+      }
+      // Identifiers only contain ASCII letters, digits and underscores
+      names[slot] = new String(input, start, end - start, StandardCharsets.US_ASCII);
+      types[slot] = TokenType.ID;
+      if (++size * 2 > names.length) {
+        String name = names[slot];
+        grow();
+        return find(name);
+      }
+      return slot;
+    }
+
+    private void put(String name, TokenType type) {
+      int slot = find(name);
+      names[slot] = name;
+      types[slot] = type;
+      size++;
+    }
+
+    /** Returns the slot of {@code name}, or the free slot it would be put in. */
+    private int find(String name) {
+      int mask = names.length - 1;
+      int slot = mix(name.hashCode()) & mask;
+      while (names[slot] != null && !names[slot].equals(name)) {
+        slot = (slot + 1) & mask;
+      }
+      return slot;
+    }
+
+    private void grow() {
+      String[] oldNames = names;
+      TokenType[] oldTypes = types;
+      names = new String[oldNames.length * 2];
+      types = new TokenType[oldTypes.length * 2];
+      for (int i = 0; i < oldNames.length; i++) {
+        if (oldNames[i] != null) {
+          int slot = find(oldNames[i]);
+          names[slot] = oldNames[i];
+          types[slot] = oldTypes[i];
+        }
+      }
+    }
+
+    private static int mix(int hash) {
+      return hash ^ (hash >>> 16);
+    }
+
+    private static boolean equals(String name, byte[] input, int start, int end) {
+      if (name.length() != end - start) {
+        return false;
+      }
+      for (int i = 0; i < name.length(); i++) {
+        if (name.charAt(i) != input[start + i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
 }
@@ -15,7 +15,8 @@
  */
 package org.mal_lang.compiler.lib;
 
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.TreeSet;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.Formatter;
@@ -74,10 +75,13 @@ public class MalLogger extends Logger {
   }
 
   private class LogMessage implements Comparable<LogMessage> {
+    // The name of the logger the message was logged to, which it is printed with
+    public final String name;
     public final Level level;
     public final String message;
 
     public LogMessage(Level level, String message) {
+      this.name = getName();
       this.level = level;
       this.message = message;
     }
@@ -91,7 +95,11 @@ public class MalLogger extends Logger {
       if (cmp != 0) {
         return cmp;
       }
-      return this.message.compareTo(o.message);
+      cmp = this.message.compareTo(o.message);
+      if (cmp != 0) {
+        return cmp;
+      }
+      return this.name.compareTo(o.name);
     }
 
     @Override
@@ -122,7 +130,11 @@ public class MalLogger extends Logger {
       if (cmp != 0) {
         return cmp;
       }
-      return this.message.compareTo(other.message);
+      cmp = this.message.compareTo(other.message);
+      if (cmp != 0) {
+        return cmp;
+      }
+      return this.name.compareTo(other.name);
     }
 
     @Override
@@ -134,8 +146,10 @@ public class MalLogger extends Logger {
   private boolean verbose;
   private boolean debug;
   private boolean isBuffered;
+  // The logger printed messages are passed to, or null if they are printed to the console
+  private MalLogger out;
 
-  private Set<LogMessage> logMessages = new TreeSet<>();
+  private Collection<LogMessage> logMessages = new TreeSet<>();
 
   public MalLogger(String name) {
     this(name, false, false);
@@ -146,7 +160,7 @@ public class MalLogger extends Logger {
   }
 
   public MalLogger(String name, boolean verbose, boolean debug, boolean isBuffered) {
-    this(name, null);
+    this(name, (String) null);
     this.verbose = verbose;
     this.debug = debug;
     this.isBuffered = isBuffered;
@@ -159,6 +173,28 @@ public class MalLogger extends Logger {
     }
   }
 
+  /**
+   * Creates a buffered logger with the level of {@code out}, that passes the messages it prints to
+   * {@code out} instead of printing them, e.g. to a logger returned by {@link #fork()}.
+   */
+  public MalLogger(String name, MalLogger out) {
+    this(name, out, true);
+  }
+
+  public MalLogger(String name, MalLogger out, boolean isBuffered) {
+    this(name, out.verbose, out.debug, isBuffered);
+    this.out = out;
+  }
+
+  /**
+   * Creates a buffered logger with the given level, that passes the messages it prints to {@code
+   * out} instead of printing them.
+   */
+  public MalLogger(String name, boolean verbose, boolean debug, MalLogger out) {
+    this(name, verbose, debug, true);
+    this.out = out;
+  }
+
   private MalLogger(String name, String resourceBundleName) {
     super(name, resourceBundleName);
     setUseParentHandlers(false);
@@ -179,11 +215,23 @@ public class MalLogger extends Logger {
     return isBuffered;
   }
 
-  private void log(LogMessage logMessage) {
+  private synchronized void log(LogMessage logMessage) {
     if (isBuffered) {
       logMessages.add(logMessage);
     } else {
-      log(logMessage.level, logMessage.toString());
+      write(logMessage);
+    }
+  }
+
+  private void write(LogMessage logMessage) {
+    if (out != null) {
+      if (isLoggable(logMessage.level)) {
+        out.log(logMessage);
+      }
+    } else {
+      var record = new LogRecord(logMessage.level, logMessage.toString());
+      record.setLoggerName(logMessage.name);
+      log(record);
     }
   }
 
@@ -221,9 +269,30 @@ public class MalLogger extends Logger {
     log(new LogMessage(MalLevel.ERROR, msg));
   }
 
-  public void print() {
+  /**
+   * Returns a buffered logger with the same name and level as this logger, that keeps its messages
+   * in the order they are logged until they are added to another logger with {@link
+   * #addAll(MalLogger)}.
+   */
+  public MalLogger fork() {
+    var logger = new MalLogger(getName(), verbose, debug, true);
+    logger.logMessages = new ArrayList<>();
+    return logger;
+  }
+
+  /**
+   * Adds the buffered messages of {@code other} to this logger. They keep the name of the logger
+   * they were logged to.
+   */
+  public void addAll(MalLogger other) {
+    for (var logMessage : other.logMessages) {
+      log(logMessage);
+    }
+  }
+
+  public synchronized void print() {
     for (var logMessage : logMessages) {
-      log(logMessage.level, logMessage.toString());
+      write(logMessage);
     }
   }
 }
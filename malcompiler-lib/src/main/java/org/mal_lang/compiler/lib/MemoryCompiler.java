@@ -0,0 +1,269 @@
+/*
+ * Copyright 2019 Foreseeti AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mal_lang.compiler.lib;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Compiles java sources held in memory with the system java compiler, without touching the file
+ * system.
+ *
+ * <p>Dependencies of the sources are resolved against the class path of the running JVM.
+ */
+public final class MemoryCompiler {
+  private MemoryCompiler() {}
+
+  /**
+   * Compiles the files ending with {@code .java} in {@code files}, keyed by their '/' separated
+   * paths, and returns a class loader that loads the compiled classes. The other files are served
+   * as resources. Both take precedence over classes and resources of {@code parent}.
+   */
+  public static ClassLoader compile(Map<String, byte[]> files, ClassLoader parent, MalLogger LOGGER)
+      throws CompilerException, IOException {
+    var compiler = ToolProvider.getSystemJavaCompiler();
+    if (compiler == null) {
+      LOGGER.error("No java compiler available");
+      throw new CompilerException("Generated code didn't compile");
+    }
+    var sources = new ArrayList<JavaFileObject>();
+    var resources = new ConcurrentHashMap<String, byte[]>();
+    for (var entry : files.entrySet()) {
+      if (entry.getKey().endsWith(".java")) {
+        sources.add(new Source(entry.getKey(), entry.getValue()));
+      } else {
+        resources.put(entry.getKey(), entry.getValue());
+      }
+    }
+    var diagnostics = new DiagnosticCollector<JavaFileObject>();
+    var classes = new ConcurrentHashMap<String, byte[]>();
+    boolean success;
+    try (var fileManager =
+        new ClassFileManager(
+            compiler.getStandardFileManager(diagnostics, Locale.ROOT, StandardCharsets.UTF_8),
+            classes)) {
+      success =
+          compiler
+              .getTask(null, fileManager, diagnostics, List.of("-proc:none"), null, sources)
+              .call();
+    }
+    for (var diagnostic : diagnostics.getDiagnostics()) {
+      if (diagnostic.getKind() != Diagnostic.Kind.ERROR) {
+        continue;
+      }
+      var source = diagnostic.getSource();
+      if (source == null) {
+        LOGGER.error(diagnostic.getMessage(Locale.ROOT));
+      } else {
+        LOGGER.error(
+            String.format(
+                "%s:%d: %s",
+                source.getName(), diagnostic.getLineNumber(), diagnostic.getMessage(Locale.ROOT)));
+      }
+    }
+    if (!success) {
+      throw new CompilerException("Generated code didn't compile");
+    }
+    return new MemoryClassLoader(parent, classes, resources);
+  }
+
+  private static class Source extends SimpleJavaFileObject {
+    private final String path;
+    private final byte[] content;
+
+    Source(String path, byte[] content) {
+      super(URI.create(String.format("string:///%s", path)), Kind.SOURCE);
+      this.path = path;
+      this.content = content;
+    }
+
+    @Override
+    public String getName() {
+      return path;
+    }
+
+    @Override
+    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+      return new String(content, StandardCharsets.UTF_8);
+    }
+  }
+
+  private static class ClassFile extends SimpleJavaFileObject {
+    private final String className;
+    private final Map<String, byte[]> classes;
+
+    ClassFile(String className, Map<String, byte[]> classes) {
+      super(
+          URI.create(String.format("bytes:///%s.class", className.replace('.', '/'))),
+          Kind.CLASS);
+      this.className = className;
+      this.classes = classes;
+    }
+
+    @Override
+    public OutputStream openOutputStream() {
+      return new ByteArrayOutputStream() {
+        @Override
+        public void close() {
+          classes.put(className, toByteArray());
+        }
+      };
+    }
+  }
+
+  private static class ClassFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+    private final Map<String, byte[]> classes;
+
+    ClassFileManager(StandardJavaFileManager fileManager, Map<String, byte[]> classes) {
+      super(fileManager);
+      this.classes = classes;
+    }
+
+    @Override
+    public JavaFileObject getJavaFileForOutput(
+        JavaFileManager.Location location,
+        String className,
+        JavaFileObject.Kind kind,
+        FileObject sibling) {
+      return new ClassFile(className, classes);
+    }
+  }
+
+  /**
+   * Loads the compiled classes and the resources before those of the parent, so that classes of
+   * the same names on the class path, e.g. an earlier build of the language, are not used.
+   */
+  private static class MemoryClassLoader extends ClassLoader {
+    private final Map<String, byte[]> classes;
+    private final Map<String, byte[]> resources;
+    private final URLStreamHandler handler;
+
+    MemoryClassLoader(
+        ClassLoader parent, Map<String, byte[]> classes, Map<String, byte[]> resources) {
+      super(parent);
+      this.classes = classes;
+      this.resources = resources;
+      this.handler =
+          new URLStreamHandler() {
+            @Override
+            protected URLConnection openConnection(URL url) throws IOException {
+              var name = url.getPath().substring(1);
+              if (!resources.containsKey(name)) {
+                throw new FileNotFoundException(url.toString());
+              }
+              return new URLConnection(url) {
+                @Override
+                public void connect() {}
+
+                @Override
+                public InputStream getInputStream() {
+                  return new ByteArrayInputStream(resources.get(name));
+                }
+              };
+            }
+          };
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+      if (!classes.containsKey(name)) {
+        return super.loadClass(name, resolve);
+      }
+      synchronized (getClassLoadingLock(name)) {
+        var cls = findLoadedClass(name);
+        if (cls == null) {
+          cls = findClass(name);
+        }
+        if (resolve) {
+          resolveClass(cls);
+        }
+        return cls;
+      }
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+      var bytes = classes.get(name);
+      if (bytes == null) {
+        throw new ClassNotFoundException(name);
+      }
+      return defineClass(name, bytes, 0, bytes.length);
+    }
+
+    @Override
+    public URL getResource(String name) {
+      var url = findResource(name);
+      return url != null ? url : super.getResource(name);
+    }
+
+    @Override
+    public Enumeration<URL> getResources(String name) throws IOException {
+      var urls = new ArrayList<URL>();
+      var url = findResource(name);
+      if (url != null) {
+        urls.add(url);
+      }
+      urls.addAll(Collections.list(super.getResources(name)));
+      return Collections.enumeration(urls);
+    }
+
+    @Override
+    protected URL findResource(String name) {
+      if (!resources.containsKey(name)) {
+        return null;
+      }
+      try {
+        return new URL("memory", null, -1, String.format("/%s", name), handler);
+      } catch (MalformedURLException e) {
+        return null;
+      }
+    }
+
+    @Override
+    public InputStream getResourceAsStream(String name) {
+      if (resources.containsKey(name)) {
+        return new ByteArrayInputStream(resources.get(name));
+      }
+      return super.getResourceAsStream(name);
+    }
+  }
+}
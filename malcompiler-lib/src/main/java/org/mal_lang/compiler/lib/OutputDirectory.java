@@ -0,0 +1,161 @@
+/*
+ * Copyright 2019 Foreseeti AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mal_lang.compiler.lib;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The directory a generator writes its files to.
+ *
+ * <p>In incremental mode, files whose content did not change are left untouched so that their
+ * timestamps stay the same, and a manifest of the written files is kept in the directory. Files
+ * that were written by the previous run but not by this one are deleted when the run finishes.
+ *
+ * <p>An output directory created without a path keeps the written files in memory.
+ */
+public final class OutputDirectory {
+  private static final String MANIFEST = ".mal-generated";
+
+  private final Path directory;
+  private final boolean incremental;
+  private final Map<String, byte[]> files;
+  private final Set<String> written = ConcurrentHashMap.newKeySet();
+  private final AtomicInteger unchanged = new AtomicInteger();
+
+  public OutputDirectory(File directory, boolean incremental) {
+    this.directory = directory.toPath().toAbsolutePath().normalize();
+    this.incremental = incremental;
+    this.files = null;
+  }
+
+  /** Creates an output directory that keeps the written files in memory. */
+  public OutputDirectory() {
+    this.directory = null;
+    this.incremental = false;
+    this.files = new ConcurrentHashMap<>();
+  }
+
+  /** Returns true if {@code directory} holds the output of an incremental run. */
+  public static boolean hasManifest(File directory) {
+    return new File(directory, MANIFEST).isFile();
+  }
+
+  /** Returns the directory, or null if the files are kept in memory. */
+  public File getDirectory() {
+    return directory == null ? null : directory.toFile();
+  }
+
+  /** Returns the files kept in memory, keyed by their paths. */
+  public Map<String, byte[]> getFiles() {
+    if (files == null) {
+      throw new IllegalStateException("Files are not kept in memory");
+    }
+    return Collections.unmodifiableMap(new TreeMap<>(files));
+  }
+
+  public boolean isIncremental() {
+    return incremental;
+  }
+
+  /** Writes {@code content} to {@code path}, a '/' separated path relative to this directory. */
+  public void write(String path, byte[] content) throws IOException {
+    written.add(path);
+    if (files != null) {
+      files.put(path, content);
+      return;
+    }
+    var file = directory.resolve(path);
+    if (incremental
+        && Files.isRegularFile(file)
+        && Files.size(file) == content.length
+        && Arrays.equals(Files.readAllBytes(file), content)) {
+      unchanged.incrementAndGet();
+      return;
+    }
+    Files.createDirectories(file.getParent());
+    Files.write(file, content);
+  }
+
+  public void write(String path, String content) throws IOException {
+    write(path, content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  public void copy(String path, InputStream in) throws IOException {
+    try (in) {
+      write(path, in.readAllBytes());
+    }
+  }
+
+  /**
+   * Deletes the files of the previous run that were not written by this run, together with the
+   * directories they leave empty, and stores the manifest of this run. Does nothing unless the
+   * directory is incremental.
+   */
+  public void finish(MalLogger LOGGER) throws IOException {
+    if (!incremental) {
+      return;
+    }
+    var manifest = directory.resolve(MANIFEST);
+    var previous = new LinkedHashSet<String>();
+    if (Files.isRegularFile(manifest)) {
+      for (var line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+        if (!line.isBlank()) {
+          previous.add(line);
+        }
+      }
+    }
+    int deleted = 0;
+    for (var path : previous) {
+      if (written.contains(path)) {
+        continue;
+      }
+      var file = directory.resolve(path).normalize();
+      if (!file.startsWith(directory) || !Files.deleteIfExists(file)) {
+        continue;
+      }
+      deleted++;
+      LOGGER.debug(String.format("Deleted stale file '%s'", path));
+      for (var dir = file.getParent(); !dir.equals(directory); dir = dir.getParent()) {
+        try (var entries = Files.list(dir)) {
+          if (entries.findAny().isPresent()) {
+            break;
+          }
+        }
+        Files.delete(dir);
+      }
+    }
+    Files.write(manifest, new ArrayList<>(new TreeSet<>(written)), StandardCharsets.UTF_8);
+    LOGGER.info(
+        String.format(
+            "Wrote %d files, %d unchanged, deleted %d stale files",
+            written.size() - unchanged.get(), unchanged.get(), deleted));
+  }
+}
@@ -22,37 +22,31 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RecursiveAction;
 
 public class Parser {
   private MalLogger LOGGER;
   private Lexer lex;
   private Token tok;
-  private Set<File> included;
   private File currentFile;
-  private Path originPath;
+  // The AST of this file is split at its includes: parts.get(i) precedes includes.get(i)
+  private List<AST> parts = new ArrayList<>();
+  private List<Include> includes = new ArrayList<>();
+  private CompilerException error;
 
-  private Parser(File file, boolean verbose, boolean debug) throws IOException {
-    Locale.setDefault(Locale.ROOT);
-    LOGGER = new MalLogger("PARSER", verbose, debug);
-    var canonicalFile = file.getCanonicalFile();
-    this.lex = new Lexer(canonicalFile);
-    this.included = new HashSet<File>();
-    this.included.add(canonicalFile);
-    this.currentFile = canonicalFile;
-    this.originPath = Path.of(canonicalFile.getParent());
+  private Parser(File file, Lexer lex, boolean verbose, boolean debug) {
+    this(file, lex, new MalLogger("PARSER", verbose, debug));
   }
 
-  private Parser(File file, Path originPath, Set<File> included, boolean verbose, boolean debug)
-      throws IOException {
+  private Parser(File file, Lexer lex, MalLogger LOGGER) {
     Locale.setDefault(Locale.ROOT);
-    LOGGER = new MalLogger("PARSER", verbose, debug);
-    this.lex = new Lexer(file, originPath.relativize(Path.of(file.getPath())).toString());
-    this.included = included;
-    this.included.add(file);
+    this.LOGGER = LOGGER;
+    this.lex = lex;
     this.currentFile = file;
-    this.originPath = originPath;
   }
 
   public static AST parse(File file) throws IOException, CompilerException {
@@ -61,23 +55,190 @@ public class Parser {
 
   public static AST parse(File file, boolean verbose, boolean debug)
       throws IOException, CompilerException {
-    return new Parser(file, verbose, debug).parseLog();
+    return parse(file, null, verbose, debug);
+  }
+
+  public static AST parse(File file, ASTCache cache) throws IOException, CompilerException {
+    return parse(file, cache, false, false);
   }
 
-  private static AST parse(
-      File file, Path originPath, Set<File> included, boolean verbose, boolean debug)
+  /**
+   * Parses {@code file} and all files it includes. Files found in {@code cache} are not parsed
+   * again, and parsed files are added to it. {@code cache} may be null.
+   */
+  public static AST parse(File file, ASTCache cache, boolean verbose, boolean debug)
       throws IOException, CompilerException {
-    return new Parser(file, originPath, included, verbose, debug).parseLog();
+    var canonicalFile = file.getCanonicalFile();
+    return new IncludeTree(canonicalFile, cache, verbose, debug, null).parse();
   }
 
-  private AST parseLog() throws CompilerException {
-    try {
-      var ast = _parse();
-      LOGGER.print();
+  /**
+   * Parses {@code file} and all files it includes like {@link #parse(File, ASTCache, boolean,
+   * boolean)}, but passes the messages of the lexers and parsers to {@code out}.
+   */
+  public static AST parse(File file, ASTCache cache, MalLogger out)
+      throws IOException, CompilerException {
+    var canonicalFile = file.getCanonicalFile();
+    return new IncludeTree(canonicalFile, cache, out.isVerbose(), out.isDebug(), out).parse();
+  }
+
+  public static AST parse(byte[] input, String filename) throws CompilerException {
+    return parse(new Lexer(input, filename), new File(filename).getAbsoluteFile(), false, false);
+  }
+
+  public static AST parse(CharSequence input, String filename) throws CompilerException {
+    return parse(new Lexer(input, filename), new File(filename).getAbsoluteFile(), false, false);
+  }
+
+  /**
+   * Parses the tokens of {@code lex} as the contents of {@code file}, without reading any file.
+   * Includes are resolved against {@code file} but not parsed, so the returned AST only contains
+   * what is defined in {@code lex}.
+   */
+  public static AST parse(Lexer lex, File file, boolean verbose, boolean debug)
+      throws CompilerException {
+    return parse(new Parser(file, lex, verbose, debug));
+  }
+
+  /**
+   * Parses {@code lex} like {@link #parse(Lexer, File, boolean, boolean)}, but passes the messages
+   * of the parser to {@code out}.
+   */
+  public static AST parse(Lexer lex, File file, MalLogger out) throws CompilerException {
+    return parse(new Parser(file, lex, new MalLogger("PARSER", out)));
+  }
+
+  private static AST parse(Parser parser) throws CompilerException {
+    parser._parseFile();
+    parser.LOGGER.print();
+    if (parser.error != null) {
+      throw parser.error;
+    }
+    var ast = new AST();
+    for (var part : parser.parts) {
+      ast.include(part);
+    }
+    return ast;
+  }
+
+  private static class Include {
+    public final Position pos;
+    public final String filename;
+    public final File file;
+
+    public Include(Position pos, String filename, File file) {
+      this.pos = pos;
+      this.filename = filename;
+      this.file = file;
+    }
+  }
+
+  /**
+   * Parses all files of an include tree concurrently, and merges them in the order the sequential
+   * parser would have visited them. Each file is parsed once, even if it is included several
+   * times.
+   */
+  private static class IncludeTree {
+    private final Path originPath;
+    private final ASTCache cache;
+    private final boolean verbose;
+    private final boolean debug;
+    private final MalLogger out;
+    private final Map<File, ParseTask> tasks = new ConcurrentHashMap<>();
+    private final ParseTask root;
+
+    public IncludeTree(File root, ASTCache cache, boolean verbose, boolean debug, MalLogger out) {
+      this.originPath = Path.of(root.getParent());
+      this.cache = cache;
+      this.verbose = verbose;
+      this.debug = debug;
+      this.out = out;
+      this.root = new ParseTask(root);
+      tasks.put(root, this.root);
+    }
+
+    // Returns a logger that prints to the console, or passes the messages to out if it is set
+    private MalLogger newLogger(String name) {
+      return out == null ? new MalLogger(name, verbose, debug) : new MalLogger(name, out);
+    }
+
+    public AST parse() throws IOException, CompilerException {
+      root.invoke();
+      if (root.ioException != null) {
+        throw root.ioException;
+      }
+      var ast = new AST();
+      var included = new HashSet<File>();
+      included.add(root.file);
+      merge(root.parser, ast, included);
       return ast;
-    } catch (CompilerException e) {
-      LOGGER.print();
-      throw e;
+    }
+
+    // Merges the same files in the same order as a depth-first walk of the includes
+    private void merge(Parser parser, AST ast, Set<File> included) throws CompilerException {
+      for (int i = 0; i < parser.parts.size(); i++) {
+        ast.include(parser.parts.get(i));
+        if (i < parser.includes.size()) {
+          var include = parser.includes.get(i);
+          if (!included.contains(include.file)) {
+            var task = tasks.get(include.file);
+            if (task.ioException != null) {
+              // The rest of this file is never reached, so its own errors are not reported
+              parser.LOGGER = newLogger("PARSER");
+              var e = parser.exception(include.pos, task.ioException.getMessage());
+              parser.LOGGER.print();
+              throw e;
+            }
+            included.add(include.file);
+            merge(task.parser, ast, included);
+          }
+        }
+      }
+      parser.LOGGER.print();
+      if (parser.error != null) {
+        throw parser.error;
+      }
+    }
+
+    private class ParseTask extends RecursiveAction {
+      private static final long serialVersionUID = 1L;
+      private final File file;
+      private Parser parser;
+      private IOException ioException;
+
+      public ParseTask(File file) {
+        this.file = file;
+      }
+
+      @Override
+      protected void compute() {
+        var filename = originPath.relativize(Path.of(file.getPath())).toString();
+        try {
+          // The lexer passes its messages to the parser, whose messages are only printed when
+          // the file is merged, so files that are never reached print nothing
+          var LOGGER = newLogger("PARSER");
+          var lexer =
+              Lexer.withLogger(file, filename, new MalLogger("LEXER", false, false, LOGGER));
+          parser = new Parser(file, lexer, LOGGER);
+        } catch (IOException e) {
+          ioException = e;
+          return;
+        }
+        if (cache == null || !parser._load(cache, filename)) {
+          parser._parseFile();
+          if (cache != null && parser.error == null) {
+            parser._store(cache);
+          }
+        }
+        var subtasks = new ArrayList<ParseTask>();
+        for (var include : parser.includes) {
+          var task = new ParseTask(include.file);
+          if (tasks.putIfAbsent(include.file, task) == null) {
+            subtasks.add(task);
+          }
+        }
+        invokeAll(subtasks);
+      }
     }
   }
 
@@ -105,9 +266,47 @@ public class Parser {
     _next();
   }
 
+  // Reads the ASTs and includes of this file from the cache, returns false if it is not cached
+  private boolean _load(ASTCache cache, String filename) {
+    var entry = cache.load(lex.getInput(), filename);
+    if (entry == null) {
+      return false;
+    }
+    var cachedIncludes = new ArrayList<Include>();
+    for (var include : entry.includes) {
+      try {
+        cachedIncludes.add(
+            new Include(include.pos, include.filename, resolveInclude(include.filename)));
+      } catch (IOException e) {
+        // Let the parser report the include
+        return false;
+      }
+    }
+    parts = entry.parts;
+    includes = cachedIncludes;
+    return true;
+  }
+
+  private void _store(ASTCache cache) {
+    var cachedIncludes = new ArrayList<ASTCache.Include>();
+    for (var include : includes) {
+      cachedIncludes.add(new ASTCache.Include(include.pos, include.filename));
+    }
+    cache.store(lex.getInput(), new ASTCache.Entry(parts, cachedIncludes));
+  }
+
+  private void _parseFile() {
+    try {
+      _parse();
+    } catch (CompilerException e) {
+      error = e;
+    }
+  }
+
   // <mal> ::= (<category> | <associations> | <include> | <define>)* EOF
-  private AST _parse() throws CompilerException {
+  private void _parse() throws CompilerException {
     var ast = new AST();
+    parts.add(ast);
     _next();
 
     while (true) {
@@ -121,15 +320,16 @@ public class Parser {
           ast.addAssociations(associations);
           break;
         case INCLUDE:
-          var include = _parseInclude();
-          ast.include(include);
+          includes.add(_parseInclude());
+          ast = new AST();
+          parts.add(ast);
           break;
         case HASH:
           var define = _parseDefine();
           ast.addDefine(define);
           break;
         case EOF:
-          return ast;
+          return;
         default:
           throw exception(malFirst);
       }
@@ -195,10 +395,18 @@ public class Parser {
   }
 
   // <include> ::= INCLUDE STRING
-  private AST _parseInclude() throws CompilerException {
+  private Include _parseInclude() throws CompilerException {
     _expect(TokenType.INCLUDE);
     var firstTok = tok;
     var filename = _parseString();
+    try {
+      return new Include(firstTok, filename, resolveInclude(filename));
+    } catch (IOException e) {
+      throw exception(firstTok, e.getMessage());
+    }
+  }
+
+  private File resolveInclude(String filename) throws IOException {
     var file = new File(filename);
 
     if (!file.isAbsolute()) {
@@ -206,21 +414,7 @@ public class Parser {
       file = new File(String.format("%s/%s", currentDir, filename));
     }
 
-    try {
-      file = file.getCanonicalFile();
-    } catch (IOException e) {
-      throw exception(firstTok, e.getMessage());
-    }
-
-    if (included.contains(file)) {
-      return new AST();
-    } else {
-      try {
-        return Parser.parse(file, originPath, included, LOGGER.isVerbose(), LOGGER.isDebug());
-      } catch (IOException e) {
-        throw exception(firstTok, e.getMessage());
-      }
-    }
+    return file.getCanonicalFile();
   }
 
   // <number> ::= INT | FLOAT
@@ -55,6 +55,25 @@ public class Token extends Position {
     this.postComments = postComments;
   }
 
+  Token(
+      TokenType type,
+      String filename,
+      int line,
+      int col,
+      String stringValue,
+      double doubleValue,
+      int intValue,
+      List<Token> preComments,
+      List<Token> postComments) {
+    super(filename, line, col);
+    this.type = type;
+    this.stringValue = stringValue;
+    this.doubleValue = doubleValue;
+    this.intValue = intValue;
+    this.preComments = preComments;
+    this.postComments = postComments;
+  }
+
   public Token(TokenType type, String filename, int line, int col, double doubleValue) {
     super(filename, line, col);
     this.type = type;
@@ -15,16 +15,23 @@ import org.mal_lang.compiler.lib.Lang;
 import org.mal_lang.compiler.lib.Lang.StepAttackStep;
 import org.mal_lang.compiler.lib.Lang.StepBinOp;
 import org.mal_lang.compiler.lib.Lang.StepExpr;
+import org.mal_lang.compiler.lib.MalLogger;
 
 public class Generator extends org.mal_lang.compiler.lib.Generator {
   public static void generate(Lang lang, Map<String, String> args)
       throws CompilerException, FileNotFoundException {
-    new Generator(lang, args);
+    new Generator(lang, args, new MalLogger("GENERATOR", false, false, false));
   }
 
-  private Generator(Lang lang, Map<String, String> args)
+  /** Generates {@code lang} and passes the messages of the generator to {@code out}. */
+  public static void generate(Lang lang, Map<String, String> args, MalLogger out)
       throws CompilerException, FileNotFoundException {
-    super(false, false);
+    new Generator(lang, args, new MalLogger("GENERATOR", out, false));
+  }
+
+  private Generator(Lang lang, Map<String, String> args, MalLogger LOGGER)
+      throws CompilerException, FileNotFoundException {
+    super(LOGGER);
     Locale.setDefault(Locale.ROOT);
     if (!args.containsKey("path") || args.get("path").isBlank()) {
       throw error("D3 generator requires argument 'path'");
@@ -22,12 +22,8 @@ import com.squareup.javapoet.MethodSpec;
 import com.squareup.javapoet.ParameterizedTypeName;
 import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
@@ -46,9 +42,12 @@ import org.mal_lang.compiler.lib.Lang.Field;
 import org.mal_lang.compiler.lib.Lang.StepExpr;
 import org.mal_lang.compiler.lib.Lang.TTCExpr;
 import org.mal_lang.compiler.lib.Lang.TTCFunc;
+import org.mal_lang.compiler.lib.MalLogger;
+import org.mal_lang.compiler.lib.MemoryCompiler;
+import org.mal_lang.compiler.lib.OutputDirectory;
 
 public class Generator extends JavaGenerator {
-  private final File output;
+  private final OutputDirectory output;
   private final Lang lang;
   private final boolean core;
 
@@ -59,18 +58,50 @@ public class Generator extends JavaGenerator {
 
   public static void generate(Lang lang, Map<String, String> args, boolean verbose, boolean debug)
       throws CompilerException, IOException {
-    new Generator(lang, args, verbose, debug)._generate();
+    new Generator(lang, args, null, new MalLogger("GENERATOR", verbose, debug, false))._generate();
   }
 
-  private Generator(Lang lang, Map<String, String> args, boolean verbose, boolean debug)
+  /** Generates {@code lang} and passes the messages of the generator to {@code out}. */
+  public static void generate(Lang lang, Map<String, String> args, MalLogger out)
+      throws CompilerException, IOException {
+    new Generator(lang, args, null, new MalLogger("GENERATOR", out, false))._generate();
+  }
+
+  public static ClassLoader compile(Lang lang, Map<String, String> args, ClassLoader parent)
+      throws CompilerException, IOException {
+    return compile(lang, args, parent, false, false);
+  }
+
+  /**
+   * Generates the classes of {@code lang} in memory and compiles them, together with the core
+   * package unless 'core' is false, without writing any files. Argument 'path' is not used. The
+   * returned class loader loads the compiled classes and serves 'attackerProfile.ttc' as a
+   * resource. Dependencies of the core package are resolved against the class path of the running
+   * JVM and loaded by {@code parent}. The compiled classes take precedence over classes of the same
+   * names that {@code parent} can load, e.g. an earlier build of the language.
+   */
+  public static ClassLoader compile(
+      Lang lang, Map<String, String> args, ClassLoader parent, boolean verbose, boolean debug)
+      throws CompilerException, IOException {
+    var output = new OutputDirectory();
+    var generator =
+        new Generator(lang, args, output, new MalLogger("GENERATOR", verbose, debug, false));
+    generator._generate();
+    return MemoryCompiler.compile(output.getFiles(), parent, generator.LOGGER);
+  }
+
+  private Generator(Lang lang, Map<String, String> args, OutputDirectory output, MalLogger LOGGER)
       throws CompilerException {
-    super(verbose, debug);
+    super(LOGGER, "");
     Locale.setDefault(Locale.ROOT);
     this.lang = lang;
-    if (!args.containsKey("path") || args.get("path").isBlank()) {
+    if (output != null) {
+      this.output = output;
+    } else if (!args.containsKey("path") || args.get("path").isBlank()) {
       throw error("Reference generator requires argument 'path'");
+    } else {
+      this.output = getOutputDirectory(args);
     }
-    this.output = getOutputDirectory(args.get("path"));
     if (!args.containsKey("package") || args.get("package").isBlank()) {
       LOGGER.warning("Missing optional argument 'package', using default");
       this.pkg = "auto";
@@ -97,23 +128,32 @@ public class Generator extends JavaGenerator {
     fillAlwaysQualifiedNames(this.lang);
   }
 
+  /** A copy of {@code generator} that logs to {@code LOGGER}, for generating an asset. */
+  private Generator(Generator generator, MalLogger LOGGER) {
+    super(LOGGER, generator.pkg);
+    this.output = generator.output;
+    this.lang = generator.lang;
+    this.core = generator.core;
+    this.alwaysQualifiedNames = generator.alwaysQualifiedNames;
+  }
+
   private void _generate() throws IOException, CompilerException {
-    for (Asset asset : lang.getAssets().values()) {
-      var javaFile = JavaFile.builder(pkg, createAsset(asset)).build();
-      javaFile.writeTo(this.output);
-    }
+    generateAssets(
+        lang.getAssets().values(),
+        (logger, asset) -> {
+          var typeSpec = new Generator(this, logger).createAsset(asset);
+          writeJavaFile(this.output, JavaFile.builder(pkg, typeSpec).build());
+        });
     if (core) {
       _generateCore();
       _generateCoverage();
     }
     _generateProfile();
+    output.finish(LOGGER);
     LOGGER.info(String.format("Created %d classes", lang.getAssets().size()));
   }
 
   private void _generateCoverage() throws IOException, CompilerException {
-    File outputFile = new File(output, "core/coverage");
-    outputFile.mkdirs();
-
     List<String> fileNames =
         Arrays.asList(
             "CoverageExtension",
@@ -129,18 +169,25 @@ public class Generator extends JavaGenerator {
       if (is == null) {
         throw error(String.format("Couldn't get resource %s", resource));
       }
-      File dst = new File(outputFile, name);
-      Files.copy(is, dst.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      output.copy(String.format("core/coverage/%s", name), is);
     }
   }
 
   private void _generateCore() throws IOException, CompilerException {
-    File outputFile = new File(output, "core");
-    outputFile.mkdirs();
-
     List<String> fileNames =
         Arrays.asList(
-            "Asset", "Attacker", "AttackStep", "AttackStepMax", "AttackStepMin", "Defense");
+            "Asset",
+            "AttackGraph",
+            "Attacker",
+            "AttackStep",
+            "AttackStepMax",
+            "AttackStepMin",
+            "AttackStepQueue",
+            "Defense",
+            "ModelContext",
+            "MonteCarlo",
+            "Registry",
+            "Simulation");
     for (String fileName : fileNames) {
       String name = String.format("%s.java", fileName);
       String resourcePath = String.format("/reference/%s", name);
@@ -148,33 +195,30 @@ public class Generator extends JavaGenerator {
       if (is == null) {
         throw error(String.format("Couldn't get resource %s", resourcePath));
       }
-      File destination = new File(outputFile, name);
-      Files.copy(is, destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      output.copy(String.format("core/%s", name), is);
     }
   }
 
   private void _generateProfile() throws CompilerException, IOException {
-    File out = new File(output, "attackerProfile.ttc");
-    try (var fw = new FileWriter(out)) {
-      for (Asset asset : lang.getAssets().values()) {
-        for (AttackStep attackStep : asset.getAttackSteps().values()) {
-          String dist = "Zero";
-          if (attackStep.hasTTC()) {
-            TTCExpr expr = attackStep.getTTC();
-            if (expr instanceof TTCFunc) {
-              dist = ((TTCFunc) expr).dist.toString();
-            } else {
-              fw.close();
-              throw error(
-                  String.format(
-                      "Advanced TTC, used at %s.%s, is not supported",
-                      asset.getName(), attackStep.getName()));
-            }
+    var sb = new StringBuilder();
+    for (Asset asset : lang.getAssets().values()) {
+      for (AttackStep attackStep : asset.getAttackSteps().values()) {
+        String dist = "Zero";
+        if (attackStep.hasTTC()) {
+          TTCExpr expr = attackStep.getTTC();
+          if (expr instanceof TTCFunc) {
+            dist = ((TTCFunc) expr).dist.toString();
+          } else {
+            throw error(
+                String.format(
+                    "Advanced TTC, used at %s.%s, is not supported",
+                    asset.getName(), attackStep.getName()));
           }
-          fw.write(String.format("%s.%s = %s%n", asset.getName(), attackStep.getName(), dist));
         }
+        sb.append(String.format("%s.%s = %s%n", asset.getName(), attackStep.getName(), dist));
       }
     }
+    output.write("attackerProfile.ttc", sb.toString());
   }
 
   private static ClassName getExtend(AttackStep as) {
@@ -256,23 +300,15 @@ public class Generator extends JavaGenerator {
       constructor.addStatement("super(name, $L)", String.join(", ", params));
     }
     constructor.addStatement("assetClassName = $S", asset.getName());
-    ClassName as = ClassName.get("core", "AttackStep");
-    ClassName defense = ClassName.get("core", "Defense");
     for (AttackStep attackStep : asset.getAttackSteps().values()) {
       ClassName type = ClassName.get(pkg, asset.getName(), ucFirst(attackStep.getName()));
       if (!attackStep.hasParent()) {
         // Step is not previously defined in parent, create a field for this class
         builder.addField(type, attackStep.getName(), Modifier.PUBLIC);
       }
-      if (attackStep.isDefense() || attackStep.isConditionalDefense()) {
-        // Is some sort of defense, remove from all defenses
-        constructor.beginControlFlow("if ($N != null)", attackStep.getName());
-        constructor.addStatement("$T.allAttackSteps.remove($N.disable)", as, attackStep.getName());
-        constructor.endControlFlow();
-        constructor.addStatement("$T.allDefenses.remove($N)", defense, attackStep.getName());
-      } else {
-        // Is normal attack step, remove from all attack steps
-        constructor.addStatement("$T.allAttackSteps.remove($N)", as, attackStep.getName());
+      if (attackStep.hasParent()) {
+        // The super constructor has already registered the overridden step, unregister it
+        unregisterInherited(constructor, attackStep);
       }
       if (attackStep.isDefense()) {
         // Is defense that can be enabled/disabled on instantiation - add a parameter to paramlist
@@ -312,16 +348,8 @@ public class Generator extends JavaGenerator {
       constructor.addStatement("assetClassName = $S", asset.getName());
       for (AttackStep attackStep : asset.getAttackSteps().values()) {
         ClassName type = ClassName.get(pkg, asset.getName(), ucFirst(attackStep.getName()));
-        if (attackStep.isDefense() || attackStep.isConditionalDefense()) {
-          // Is some sort of defense, remove from all defenses
-          constructor.beginControlFlow("if ($N != null)", attackStep.getName());
-          constructor.addStatement(
-              "$T.allAttackSteps.remove($N.disable)", as, attackStep.getName());
-          constructor.endControlFlow();
-          constructor.addStatement("$T.allDefenses.remove($N)", defense, attackStep.getName());
-        } else {
-          // Is normal attack step, remove from all attack steps
-          constructor.addStatement("$T.allAttackSteps.remove($N)", as, attackStep.getName());
+        if (attackStep.hasParent()) {
+          unregisterInherited(constructor, attackStep);
         }
         if (attackStep.isDefense()) {
           if (!attackStep.hasTTC()) {
@@ -389,8 +417,28 @@ public class Generator extends JavaGenerator {
     return builder.build();
   }
 
+  /**
+   * Removes the instance of an overridden attack step, created by the super constructor, from the
+   * model registries. Removal from a registry is constant time.
+   *
+   * @param constructor, constructor to add the statements to
+   * @param attackStep, overriding attack step
+   */
+  private static void unregisterInherited(MethodSpec.Builder constructor, AttackStep attackStep) {
+    if (attackStep.isDefense() || attackStep.isConditionalDefense()) {
+      // Is some sort of defense, remove it and its disable step
+      constructor.beginControlFlow("if ($N != null)", attackStep.getName());
+      constructor.addStatement("$N.unregister()", attackStep.getName());
+      constructor.endControlFlow();
+    } else {
+      // Is normal attack step, remove it
+      constructor.addStatement("$N.unregister()", attackStep.getName());
+    }
+  }
+
   private void createVariable(
       TypeSpec.Builder parentBuilder, String name, StepExpr expr, Asset asset) {
+    Name.reset();
     String setName = String.format("_cache%s", name);
     String methodName = String.format("_%s", name);
 
@@ -416,21 +464,20 @@ public class Generator extends JavaGenerator {
     parentBuilder.addMethod(builder.build());
   }
 
-  private void createUpdateChildren(
+  private void createChildren(
       TypeSpec.Builder parentBuilder, AttackStep attackStep, String cacheName) {
-    MethodSpec.Builder builder = MethodSpec.methodBuilder("updateChildren");
+    MethodSpec.Builder builder = MethodSpec.methodBuilder("children");
     builder.addAnnotation(Override.class);
-    builder.addModifiers(Modifier.PUBLIC);
+    builder.addModifiers(Modifier.PROTECTED);
     ClassName set = ClassName.get(Set.class);
     ClassName as = ClassName.get("core", "AttackStep");
-    TypeName asSet = ParameterizedTypeName.get(set, as);
-    builder.addParameter(asSet, "attackSteps");
-    if (attackStep.inheritsReaches()) {
-      builder.addStatement("super.updateChildren(attackSteps)");
-    }
+    builder.returns(ParameterizedTypeName.get(set, as));
 
     builder.beginControlFlow("if ($N == null)", cacheName);
     builder.addStatement("$N = new $T<>()", cacheName, HashSet.class);
+    if (attackStep.inheritsReaches()) {
+      builder.addStatement("$N.addAll(super.children())", cacheName);
+    }
     for (StepExpr expr : attackStep.getReaches()) {
       AutoFlow af = new AutoFlow();
       AutoFlow end = generateExpr(af, expr, attackStep.getAsset());
@@ -438,22 +485,21 @@ public class Generator extends JavaGenerator {
       af.build(builder);
     }
     builder.endControlFlow();
-
-    builder.beginControlFlow("for ($T attackStep : $N)", as, cacheName);
-    builder.addStatement("attackStep.updateTtc(this, ttc, attackSteps)");
-    builder.endControlFlow();
+    builder.addStatement("return $N", cacheName);
 
     parentBuilder.addMethod(builder.build());
   }
 
-  private MethodSpec.Builder createSetExpectedParents(AttackStep attackStep, String cacheName) {
-    MethodSpec.Builder builder = MethodSpec.methodBuilder("setExpectedParents");
+  private MethodSpec.Builder createParents(AttackStep attackStep, String cacheName) {
+    MethodSpec.Builder builder = MethodSpec.methodBuilder("parents");
     builder.addAnnotation(Override.class);
-    builder.addModifiers(Modifier.PUBLIC);
-    builder.addStatement("super.setExpectedParents()");
+    builder.addModifiers(Modifier.PROTECTED);
+    ClassName set = ClassName.get(Set.class);
+    ClassName as = ClassName.get("core", "AttackStep");
+    builder.returns(ParameterizedTypeName.get(set, as));
 
     builder.beginControlFlow("if ($N == null)", cacheName);
-    builder.addStatement("$N = new $T<>()", cacheName, HashSet.class);
+    builder.addStatement("$N = new $T<>(super.parents())", cacheName, HashSet.class);
     for (StepExpr expr : attackStep.getParentSteps()) {
       AutoFlow af = new AutoFlow();
       AutoFlow end = generateExpr(af, expr, attackStep.getAsset());
@@ -461,22 +507,44 @@ public class Generator extends JavaGenerator {
       af.build(builder);
     }
     builder.endControlFlow();
-
-    ClassName as = ClassName.get("core", "AttackStep");
-    builder.beginControlFlow("for ($T attackStep : $N)", as, cacheName);
-    builder.addStatement("addExpectedParent(attackStep)");
-    builder.endControlFlow();
+    builder.addStatement("return $N", cacheName);
 
     return builder;
   }
 
-  private static MethodSpec.Builder createLocalTtc(String assetName, String name) {
-    MethodSpec.Builder builder = MethodSpec.methodBuilder("localTtc");
-    builder.addAnnotation(Override.class);
-    builder.addModifiers(Modifier.PUBLIC);
-    builder.returns(double.class);
-    builder.addStatement("return ttcHashMap.get($S)", String.format("%s.%s", assetName, name));
-    return builder;
+  /**
+   * Creates a static field in the asset holding the ttc ordinal of an attack step, and the localTtc
+   * and ttcOrdinal methods of the attack step.
+   *
+   * @param parentBuilder, builder of the asset
+   * @param builder, builder of the attack step
+   * @param attackStep, attack step to create localTtc for
+   */
+  private void createLocalTtc(
+      TypeSpec.Builder parentBuilder, TypeSpec.Builder builder, AttackStep attackStep) {
+    String assetName = attackStep.getAsset().getName();
+    String indexName = String.format("_ttcIndex%s", ucFirst(attackStep.getName()));
+    ClassName as = ClassName.get("core", "AttackStep");
+    parentBuilder.addField(
+        FieldSpec.builder(int.class, indexName, Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+            .initializer(
+                "$T.ttcIndex($S)", as, String.format("%s.%s", assetName, attackStep.getName()))
+            .build());
+
+    ClassName asset = ClassName.get(pkg, assetName);
+    MethodSpec.Builder method = MethodSpec.methodBuilder("localTtc");
+    method.addAnnotation(Override.class);
+    method.addModifiers(Modifier.PUBLIC);
+    method.returns(double.class);
+    method.addStatement("return localTtc($T.$N)", asset, indexName);
+    builder.addMethod(method.build());
+
+    method = MethodSpec.methodBuilder("ttcOrdinal");
+    method.addAnnotation(Override.class);
+    method.addModifiers(Modifier.PROTECTED);
+    method.returns(int.class);
+    method.addStatement("return $T.$N", asset, indexName);
+    builder.addMethod(method.build());
   }
 
   private static MethodSpec.Builder createFullName(String assetName, String name) {
@@ -509,12 +577,12 @@ public class Generator extends JavaGenerator {
     if (!attackStep.getReaches().isEmpty()) {
       String name = String.format("_cacheChildren%s", ucFirst(attackStep.getName()));
       createSetField(builder, name);
-      createUpdateChildren(builder, attackStep, name);
+      createChildren(builder, attackStep, name);
     }
     if (!attackStep.getParentSteps().isEmpty()) {
       String name = String.format("_cacheParent%s", ucFirst(attackStep.getName()));
       createSetField(builder, name);
-      builder.addMethod(createSetExpectedParents(attackStep, name).build());
+      builder.addMethod(createParents(attackStep, name).build());
     }
     builder.addMethod(
         createFullName(attackStep.getAsset().getName(), attackStep.getName()).build());
@@ -627,16 +695,15 @@ public class Generator extends JavaGenerator {
       if (!attackStep.getReaches().isEmpty()) {
         String name = String.format("_cacheChildren%s", ucFirst(attackStep.getName()));
         createSetField(builder, name);
-        createUpdateChildren(builder, attackStep, name);
+        createChildren(builder, attackStep, name);
       }
 
       if (!attackStep.getParentSteps().isEmpty()) {
         String name = String.format("_cacheParent%s", ucFirst(attackStep.getName()));
         createSetField(builder, name);
-        builder.addMethod(createSetExpectedParents(attackStep, name).build());
+        builder.addMethod(createParents(attackStep, name).build());
       }
-      builder.addMethod(
-          createLocalTtc(attackStep.getAsset().getName(), attackStep.getName()).build());
+      createLocalTtc(parentBuilder, builder, attackStep);
     }
 
     parentBuilder.addType(builder.build());
@@ -15,6 +15,7 @@
  */
 package org.mal_lang.compiler.lib.securicad;
 
+import com.kitfox.svg.SVGUniverse;
 import com.kitfox.svg.app.beans.SVGIcon;
 import com.squareup.javapoet.AnnotationSpec;
 import com.squareup.javapoet.ClassName;
@@ -45,9 +46,10 @@ import org.mal_lang.compiler.lib.Lang.AttackStep;
 import org.mal_lang.compiler.lib.Lang.Field;
 import org.mal_lang.compiler.lib.Lang.Link;
 import org.mal_lang.compiler.lib.MalLogger;
+import org.mal_lang.compiler.lib.OutputDirectory;
 
 public class AssetGenerator extends JavaGenerator {
-  private final File output;
+  private final OutputDirectory output;
   private final File icons;
   private final Lang lang;
   private final AttackStepGenerator asGen;
@@ -58,7 +60,7 @@ public class AssetGenerator extends JavaGenerator {
   protected AssetGenerator(
       MalLogger LOGGER,
       String pkg,
-      File output,
+      OutputDirectory output,
       File icons,
       Lang lang,
       String[] alwaysQualifiedNames) {
@@ -154,7 +156,7 @@ public class AssetGenerator extends JavaGenerator {
     }
 
     var file = JavaFile.builder(this.pkg, builder.build()).build();
-    file.writeTo(this.output);
+    writeJavaFile(this.output, file);
   }
 
   private void createClearCache(
@@ -391,6 +393,8 @@ public class AssetGenerator extends JavaGenerator {
       pngBytes = Files.readAllBytes(icon.toPath());
     } else {
       SVGIcon svg = new SVGIcon();
+      // The shared universe is not thread-safe, and assets are generated concurrently
+      svg.setSvgUniverse(new SVGUniverse());
       svg.setPreferredSize(new Dimension(48, 48));
       svg.setAutosize(SVGIcon.AUTOSIZE_BESTFIT);
       svg.setInterpolation(SVGIcon.INTERP_BICUBIC);
@@ -118,6 +118,7 @@ public class DefenseGenerator extends JavaGenerator {
   }
 
   private void createIsEnabled(TypeSpec.Builder parentBuilder, AttackStep attackStep) {
+    Name.reset();
     // Overriding the isEnabled method, defense will be enabled if all requirements exist
     MethodSpec.Builder method = MethodSpec.methodBuilder("isEnabled");
     method.addAnnotation(Override.class);
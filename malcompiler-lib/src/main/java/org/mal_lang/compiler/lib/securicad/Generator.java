@@ -27,8 +27,6 @@ import com.squareup.javapoet.TypeSpec;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -47,9 +45,11 @@ import org.mal_lang.compiler.lib.Lang.Asset;
 import org.mal_lang.compiler.lib.Lang.AttackStep;
 import org.mal_lang.compiler.lib.Lang.Link;
 import org.mal_lang.compiler.lib.MalInfo;
+import org.mal_lang.compiler.lib.MalLogger;
+import org.mal_lang.compiler.lib.OutputDirectory;
 
 public class Generator extends JavaGenerator {
-  private final File output;
+  private final OutputDirectory output;
   private final Lang lang;
   private final File icons;
   private final boolean mock;
@@ -62,12 +62,18 @@ public class Generator extends JavaGenerator {
 
   public static void generate(Lang lang, Map<String, String> args, boolean verbose, boolean debug)
       throws CompilerException, IOException {
-    new Generator(lang, args, verbose, debug)._generate();
+    new Generator(lang, args, new MalLogger("GENERATOR", verbose, debug, false))._generate();
   }
 
-  private Generator(Lang lang, Map<String, String> args, boolean verbose, boolean debug)
+  /** Generates {@code lang} and passes the messages of the generator to {@code out}. */
+  public static void generate(Lang lang, Map<String, String> args, MalLogger out)
+      throws CompilerException, IOException {
+    new Generator(lang, args, new MalLogger("GENERATOR", out, false))._generate();
+  }
+
+  private Generator(Lang lang, Map<String, String> args, MalLogger LOGGER)
       throws CompilerException {
-    super(verbose, debug);
+    super(LOGGER, "");
     // to not have svgSalamander flash a ghost window
     System.setProperty("java.awt.headless", "true");
     Locale.setDefault(Locale.ROOT);
@@ -75,7 +81,7 @@ public class Generator extends JavaGenerator {
     if (!args.containsKey("path") || args.get("path").isBlank()) {
       throw error("SecuriCAD generator requires argument 'path'");
     }
-    this.output = getOutputDirectory(args.get("path"));
+    this.output = getOutputDirectory(args);
     if (!args.containsKey("package") || args.get("package").isBlank()) {
       LOGGER.warning("Missing optional argument 'package', using default");
       this.pkg = "auto";
@@ -187,10 +193,11 @@ public class Generator extends JavaGenerator {
   }
 
   private void _generate() throws IOException, CompilerException {
-    AssetGenerator ag = new AssetGenerator(LOGGER, pkg, output, icons, lang, alwaysQualifiedNames);
-    for (Asset asset : lang.getAssets().values()) {
-      ag.generate(asset);
-    }
+    generateAssets(
+        lang.getAssets().values(),
+        (logger, asset) ->
+            new AssetGenerator(logger, pkg, output, icons, lang, alwaysQualifiedNames)
+                .generate(asset));
 
     createAutoLangLink();
     createMetaData();
@@ -200,6 +207,7 @@ public class Generator extends JavaGenerator {
       createMock();
     }
 
+    output.finish(LOGGER);
     LOGGER.info(String.format("Created %d classes", lang.getAssets().size()));
   }
 
@@ -235,7 +243,7 @@ public class Generator extends JavaGenerator {
     builder.addMethod(getName.build());
 
     JavaFile javaFile = JavaFile.builder(this.pkg, builder.build()).build();
-    javaFile.writeTo(this.output);
+    writeJavaFile(this.output, javaFile);
   }
 
   private void createMetaData() throws IOException {
@@ -272,7 +280,7 @@ public class Generator extends JavaGenerator {
     createCategories(builder);
 
     JavaFile javaFile = JavaFile.builder(this.pkg, builder.build()).build();
-    javaFile.writeTo(this.output);
+    writeJavaFile(this.output, javaFile);
   }
 
   private List<String> getSortedCategories() {
@@ -343,9 +351,7 @@ public class Generator extends JavaGenerator {
       throw error(String.format("Couldn't get resource %s", resourcePath));
     }
     String code = String.format("package %s;%n%n%s", this.pkg, new String(is.readAllBytes()));
-    Files.writeString(
-        new File(new File(output, this.pkg.replaceAll("\\.", "/")), "Attacker.java").toPath(),
-        code);
+    output.write(String.format("%s/Attacker.java", this.pkg.replaceAll("\\.", "/")), code);
   }
 
   private void createMock() throws IOException, CompilerException {
@@ -355,7 +361,7 @@ public class Generator extends JavaGenerator {
 
   private void createCorelibMock() throws IOException, CompilerException {
     // com.foreseeti.corelib
-    var corelibDirectory = new File(output, "com/foreseeti/corelib");
+    var corelibDirectory = "com/foreseeti/corelib";
     String[] corelibFiles = {
       "AbstractSample.java",
       "AssociationManager.java",
@@ -369,7 +375,7 @@ public class Generator extends JavaGenerator {
     copyMockFiles("/securicad/mock/corelib", corelibDirectory, corelibFiles);
 
     // com.foreseeti.corelib.math
-    var corelibMathDirectory = new File(corelibDirectory, "math");
+    var corelibMathDirectory = corelibDirectory + "/math";
     String[] corelibMathFiles = {
       "FBernoulliDistribution.java",
       "FBinomialDistribution.java",
@@ -385,14 +391,14 @@ public class Generator extends JavaGenerator {
     copyMockFiles("/securicad/mock/corelib/math", corelibMathDirectory, corelibMathFiles);
 
     // com.foreseeti.corelib.util
-    var corelibUtilDirectory = new File(corelibDirectory, "util");
+    var corelibUtilDirectory = corelibDirectory + "/util";
     String[] corelibUtilFiles = {"FProb.java", "FProbSet.java"};
     copyMockFiles("/securicad/mock/corelib/util", corelibUtilDirectory, corelibUtilFiles);
   }
 
   private void createSimulatorMock() throws IOException, CompilerException {
     // com.foreseeti.simulator
-    var simulatorDirectory = new File(output, "com/foreseeti/simulator");
+    var simulatorDirectory = "com/foreseeti/simulator";
     String[] simulatorFiles = {
       "Asset.java",
       "AbstractAttacker.java",
@@ -408,22 +414,15 @@ public class Generator extends JavaGenerator {
     copyMockFiles("/securicad/mock/simulator", simulatorDirectory, simulatorFiles);
   }
 
-  private void copyMockFiles(String sourcePath, File outputDirectory, String[] files)
+  private void copyMockFiles(String sourcePath, String outputDirectory, String[] files)
       throws IOException, CompilerException {
-    if (outputDirectory.exists()) {
-      throw error(String.format("Path \"%s\" already exists", outputDirectory.getPath()));
-    }
-    if (!outputDirectory.mkdirs()) {
-      throw error(String.format("Failed to create directory \"%s\"", outputDirectory.getPath()));
-    }
     for (var file : files) {
       var resourcePath = String.format("%s/%s", sourcePath, file);
       var resourceStream = Generator.class.getResourceAsStream(resourcePath);
       if (resourceStream == null) {
         throw error(String.format("Couldn't get resource %s", resourcePath));
       }
-      var targetFile = new File(outputDirectory, file);
-      Files.copy(resourceStream, targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      output.copy(String.format("%s/%s", outputDirectory, file), resourceStream);
     }
   }
 
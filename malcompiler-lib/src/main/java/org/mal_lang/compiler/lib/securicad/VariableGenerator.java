@@ -38,6 +38,7 @@ public class VariableGenerator extends JavaGenerator {
   }
 
   protected void generate(TypeSpec.Builder parentBuilder, String name, StepExpr expr, Asset asset) {
+    Name.reset();
     String setName = String.format("_cache%s", name);
     String methodName = String.format("_%s", name);
 
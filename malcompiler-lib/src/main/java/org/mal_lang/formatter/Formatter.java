@@ -18,11 +18,20 @@ package org.mal_lang.formatter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.mal_lang.compiler.lib.CompilerException;
 import org.mal_lang.compiler.lib.Lexer;
 import org.mal_lang.compiler.lib.MalLogger;
+import org.mal_lang.compiler.lib.Token;
 
 /**
  * Code formatter for MAL. The layout algorithm is based on three simple combinators; stacking,
@@ -32,68 +41,188 @@ import org.mal_lang.compiler.lib.MalLogger;
  * <p>Yelland, P. (2016). A New Approach to Optimal Code Formatting.
  */
 public class Formatter {
-  private static MalLogger LOGGER;
-
   public static String format(File file, Map<String, String> opts)
       throws IOException, CompilerException {
-    boolean inplace = false;
-    if (opts.containsKey("inplace")) {
-      switch (opts.get("inplace").toLowerCase().strip()) {
-        case "true":
-          inplace = true;
-          break;
-        case "false":
-          inplace = false;
-          break;
-        default:
-          throw new CompilerException(
-              "Optional argument 'inplace' must be either 'true' or 'false'");
+    return format(file, getMargin(opts), getBoolean(opts, "inplace"));
+  }
+
+  public static String format(File file, int margin, boolean inplace)
+      throws IOException, CompilerException {
+    Locale.setDefault(Locale.ROOT);
+    var LOGGER = new MalLogger("FORMATTER", false, false, false);
+    String output;
+    try {
+      output =
+          format(new Lexer(file, file.getName(), LOGGER), file.getCanonicalFile(), margin, LOGGER);
+    } finally {
+      LOGGER.print();
+    }
+    if (inplace) {
+      try (var fos = new FileOutputStream(file, false)) {
+        fos.write(output.getBytes(StandardCharsets.UTF_8));
+      }
+    } else {
+      System.out.print(output);
+    }
+    return output;
+  }
+
+  /**
+   * Formats {@code input}, the contents of a file named {@code filename}, without reading or
+   * writing any file.
+   */
+  public static String format(byte[] input, String filename, int margin) throws CompilerException {
+    Locale.setDefault(Locale.ROOT);
+    var LOGGER = new MalLogger("FORMATTER", false, false, false);
+    try {
+      return format(
+          new Lexer(input, filename, LOGGER), new File(filename).getAbsoluteFile(), margin, LOGGER);
+    } finally {
+      LOGGER.print();
+    }
+  }
+
+  /**
+   * Formats {@code files} concurrently on the common fork-join pool, where directories are searched
+   * for .mal files. The files that are not formatted are printed in order when all files are done,
+   * and so are the errors of each file, after the file that could not be formatted.
+   * If {@code opts} has 'inplace=true' they are also rewritten, other files are never written. If
+   * {@code opts} has 'check=true' it is an error if any file is not formatted.
+   *
+   * @return the files that were not formatted
+   */
+  public static List<File> formatAll(List<File> files, Map<String, String> opts)
+      throws IOException, CompilerException {
+    Locale.setDefault(Locale.ROOT);
+    int margin = getMargin(opts);
+    boolean inplace = getBoolean(opts, "inplace");
+    boolean check = getBoolean(opts, "check");
+    // Unbuffered, so that the messages of each file are printed together
+    var LOGGER = new MalLogger("FORMATTER", false, false, false);
+    var malFiles = findMalFiles(files);
+    var loggers = new MalLogger[malFiles.size()];
+    var changed = new boolean[malFiles.size()];
+    var ioErrors = new IOException[malFiles.size()];
+    var errors = new CompilerException[malFiles.size()];
+    IntStream.range(0, malFiles.size())
+        .parallel()
+        .forEach(
+            i -> {
+              var file = malFiles.get(i);
+              loggers[i] = LOGGER.fork();
+              try {
+                var input = Files.readAllBytes(file.toPath());
+                var output =
+                    format(
+                            new Lexer(input, file.getPath(), loggers[i]),
+                            file.getCanonicalFile(),
+                            margin,
+                            loggers[i])
+                        .getBytes(StandardCharsets.UTF_8);
+                changed[i] = !Arrays.equals(input, output);
+                if (changed[i] && inplace) {
+                  Files.write(file.toPath(), output);
+                }
+              } catch (IOException e) {
+                ioErrors[i] = e;
+              } catch (CompilerException e) {
+                errors[i] = e;
+              }
+            });
+    var unformatted = new ArrayList<File>();
+    int failed = 0;
+    for (int i = 0; i < malFiles.size(); i++) {
+      if (ioErrors[i] != null) {
+        throw ioErrors[i];
+      } else if (errors[i] != null) {
+        LOGGER.error(String.format("%s could not be formatted", malFiles.get(i).getPath()));
+        LOGGER.addAll(loggers[i]);
+        failed++;
+      } else if (changed[i]) {
+        System.out.println(malFiles.get(i).getPath());
+        unformatted.add(malFiles.get(i));
+      }
+    }
+    if (failed > 0) {
+      throw new CompilerException(
+          String.format("%d of %d files could not be formatted", failed, malFiles.size()));
+    }
+    if (check && !unformatted.isEmpty()) {
+      throw new CompilerException(
+          String.format(
+              "%d of %d files are not formatted", unformatted.size(), malFiles.size()));
+    }
+    return unformatted;
+  }
+
+  // Returns the files, and the .mal files below the directories, of files in a stable order
+  private static List<File> findMalFiles(List<File> files) throws IOException {
+    var malFiles = new ArrayList<File>();
+    for (var file : files) {
+      if (file.isDirectory()) {
+        try (var paths = Files.walk(file.toPath())) {
+          malFiles.addAll(
+              paths
+                  .filter(path -> path.toString().endsWith(".mal") && Files.isRegularFile(path))
+                  .sorted()
+                  .map(Path::toFile)
+                  .collect(Collectors.toList()));
+        }
+      } else if (file.exists()) {
+        malFiles.add(file);
+      } else {
+        throw new IOException(String.format("%s: No such file or directory", file.getPath()));
       }
     }
+    return malFiles;
+  }
+
+  private static int getMargin(Map<String, String> opts) throws CompilerException {
     int margin = opts.containsKey("margin") ? Integer.parseInt(opts.get("margin")) : 100;
     if (margin < 0) {
       throw new CompilerException("Optional argument 'margin' must be a positive integer");
     }
-    return format(file, margin, inplace);
+    return margin;
   }
 
-  public static String format(File file, int margin, boolean inplace)
-      throws IOException, CompilerException {
-    Locale.setDefault(Locale.ROOT);
-    LOGGER = new MalLogger("FORMATTER", false, false);
+  private static boolean getBoolean(Map<String, String> opts, String name)
+      throws CompilerException {
+    if (!opts.containsKey(name)) {
+      return false;
+    }
+    switch (opts.get(name).toLowerCase().strip()) {
+      case "true":
+        return true;
+      case "false":
+        return false;
+      default:
+        throw new CompilerException(
+            String.format("Optional argument '%s' must be either 'true' or 'false'", name));
+    }
+  }
+
+  // The input is lexed once, and its tokens are both validated, formatted and compared with the
+  // tokens of the output. Includes are not followed, only the input itself must be valid. Errors,
+  // also those of the parser, are logged to LOGGER, which the caller prints. The caller passes
+  // LOGGER to lex as well.
+  private static String format(Lexer lex, File file, int margin, MalLogger LOGGER)
+      throws CompilerException {
+    List<Token> tokens;
     try {
-      org.mal_lang.compiler.lib.Parser.parse(file);
-    } catch (IOException e) {
-      throw e;
+      tokens = lex.tokenize();
+      org.mal_lang.compiler.lib.Parser.parse(new Lexer(tokens), file, LOGGER);
     } catch (CompilerException e) {
       LOGGER.error("Code to be formatted must be syntactically valid");
-      LOGGER.print();
       throw e;
     }
-    var p = new Parser(file);
+    var p = new Parser(new Lexer(tokens));
     p.parse();
     var output = p.getOutput(margin);
     output = output.replaceAll("(?m) +$", "");
-    var bytes = output.getBytes();
-    var tempFile = File.createTempFile("formatted", ".tmp");
-    tempFile.deleteOnExit();
-    try (var fos = new FileOutputStream(tempFile)) {
-      fos.write(bytes);
-      if (!Lexer.syntacticallyEqual(new Lexer(file), new Lexer(tempFile))) {
-        throw new CompilerException(
-            "The formatter has produced an AST that differs from the input.");
-      }
-    } catch (Exception e) {
+    var outputLexer = new Lexer(output.getBytes(StandardCharsets.UTF_8), file.getName(), LOGGER);
+    if (!Lexer.syntacticallyEqual(new Lexer(tokens), outputLexer)) {
       LOGGER.error("The formatter has produced an invalid AST. Please report this as a bug.");
-      LOGGER.print();
-      throw e;
-    }
-    if (inplace) {
-      try (var fos = new FileOutputStream(file, false)) {
-        fos.write(bytes);
-      }
-    } else {
-      System.out.print(output);
+      throw new CompilerException("The formatter has produced an AST that differs from the input.");
     }
     return output;
   }
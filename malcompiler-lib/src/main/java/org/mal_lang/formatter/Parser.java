@@ -43,6 +43,18 @@ public class Parser {
     this.lex = new Lexer(canonicalFile);
   }
 
+  public Parser(byte[] input, String filename) {
+    this(new Lexer(input, filename));
+  }
+
+  public Parser(CharSequence input, String filename) {
+    this(new Lexer(input, filename));
+  }
+
+  public Parser(Lexer lex) {
+    this.lex = lex;
+  }
+
   public String getOutput(int margin) {
     block.update(0, margin);
     return block.getOutput();
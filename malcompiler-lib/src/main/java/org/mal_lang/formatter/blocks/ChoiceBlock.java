@@ -15,9 +15,20 @@
  */
 package org.mal_lang.formatter.blocks;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * Chooses the alternative with the lowest cost. The chosen layout is remembered for every start
+ * index, since the same choice is reached through many alternatives of enclosing choices, e.g. the
+ * shared tails of a {@link WrapBlock}. Without this, nested choices are updated an exponential
+ * number of times.
+ */
 public class ChoiceBlock extends MultiBlock {
+  private Map<Integer, Layout> layouts = new HashMap<>();
+  private int layoutMargin = -1;
+
   public ChoiceBlock(Block... blocks) {
     super(blocks);
   }
@@ -26,16 +37,47 @@ public class ChoiceBlock extends MultiBlock {
     super(blocks);
   }
 
+  @Override
+  public void add(Block block) {
+    super.add(block);
+    layouts.clear();
+  }
+
   @Override
   public void update(int index, int margin) {
-    cost = Integer.MAX_VALUE;
+    if (margin != layoutMargin) {
+      layouts.clear();
+      layoutMargin = margin;
+    }
+    if (!layouts.containsKey(index)) {
+      layouts.put(index, choose(index, margin));
+    }
+    var layout = layouts.get(index);
+    this.index = layout.index;
+    cost = layout.cost;
+    output = layout.output;
+  }
+
+  private Layout choose(int index, int margin) {
+    var best = new Layout(index, Integer.MAX_VALUE, null);
     for (var block : blocks) {
       block.update(index, margin);
-      if (block.getCost() < cost) {
-        this.index = block.getIndex();
-        cost = block.getCost();
-        output = block.getOutput();
+      if (block.getCost() < best.cost) {
+        best = new Layout(block.getIndex(), block.getCost(), block.getOutput());
       }
     }
+    return best;
+  }
+
+  private static class Layout {
+    final int index;
+    final int cost;
+    final String output;
+
+    Layout(int index, int cost, String output) {
+      this.index = index;
+      this.cost = cost;
+      this.output = output;
+    }
   }
 }
@@ -12,7 +12,11 @@ public class Asset {
 
   public String name;
   public String assetClassName;
-  public static List<Asset> allAssets = new ArrayList<>();
+  // Assets of the current model context
+  public static List<Asset> allAssets = ModelContext.currentView(c -> c.assets);
+  protected final ModelContext modelContext = ModelContext.current();
+  // Slot in the asset registry of the model context, -1 when not registered
+  int registryIndex = -1;
 
   public Asset() {
     this("Anonymous");
@@ -20,7 +24,7 @@ public class Asset {
 
   public Asset(String name) {
     this.name = name;
-    allAssets.add(this);
+    modelContext.assets.add(this);
   }
 
   public static Asset getAsset(String assetName) {
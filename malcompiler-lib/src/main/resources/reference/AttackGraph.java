@@ -0,0 +1,124 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Frozen attack graph of a model, as compressed sparse row arrays. Step {@code i} is {@code
+ * steps[i]}, and its children are {@code children[childStart[i]]} up to {@code
+ * children[childStart[i + 1] - 1]}.
+ *
+ * <p>The graph is built once by {@link Attacker#freeze()}, after which the model can be simulated
+ * any number of times by {@link Simulation} without walking the object graph. Changes to the model
+ * made after freezing it are not seen by the graph.
+ */
+public final class AttackGraph {
+  static final byte NONE = 0;
+  static final byte OR = 1;
+  static final byte AND = 2;
+
+  final AttackStep[] steps;
+  final byte[] kind;
+  final int[] childStart;
+  final int[] children;
+  // Whether the parent of an edge is one of the expected parents of its child
+  final boolean[] expectedEdge;
+  final int[] expectedParents;
+  final int[] ttcOrdinal;
+  // Local ttc of every step in the profile the graph was frozen with
+  final double[] localTtc;
+  final int[] startSteps;
+  private Map<AttackStep, Integer> indices;
+
+  AttackGraph(ModelContext modelContext, Iterable<AttackStep> attackPoints) {
+    steps = modelContext.attackSteps.toArray(new AttackStep[0]);
+    int n = steps.length;
+    kind = new byte[n];
+    childStart = new int[n + 1];
+    expectedParents = new int[n];
+    ttcOrdinal = new int[n];
+    localTtc = new double[n];
+
+    int edges = 0;
+    for (int i = 0; i < n; i++) {
+      AttackStep step = steps[i];
+      if (step instanceof AttackStepMax) {
+        kind[i] = AND;
+      } else if (step instanceof AttackStepMin) {
+        kind[i] = OR;
+      } else {
+        kind[i] = NONE;
+      }
+      expectedParents[i] = step.parents().size();
+      ttcOrdinal[i] = step.ttcOrdinal();
+      localTtc[i] = step.localTtc();
+      for (AttackStep child : step.children()) {
+        if (indexOf(child) >= 0) {
+          edges++;
+        }
+      }
+    }
+
+    children = new int[edges];
+    expectedEdge = new boolean[edges];
+    int edge = 0;
+    for (int i = 0; i < n; i++) {
+      childStart[i] = edge;
+      for (AttackStep child : steps[i].children()) {
+        int childIndex = indexOf(child);
+        if (childIndex >= 0) {
+          children[edge] = childIndex;
+          expectedEdge[edge] = child.parents().contains(steps[i]);
+          edge++;
+        }
+      }
+    }
+    childStart[n] = edge;
+
+    List<Integer> start = new ArrayList<>();
+    for (AttackStep attackPoint : attackPoints) {
+      int index = indexOf(attackPoint);
+      if (index >= 0) {
+        start.add(index);
+      }
+    }
+    for (Defense defense : modelContext.defenses) {
+      if (!defense.isEnabled()) {
+        int index = indexOf(defense.disable);
+        if (index >= 0) {
+          start.add(index);
+        }
+      }
+    }
+    startSteps = start.stream().mapToInt(Integer::intValue).toArray();
+  }
+
+  /** Returns the index of {@code attackStep} in this graph, or -1 if it is not part of it. */
+  public int indexOf(AttackStep attackStep) {
+    // Reading the registry compacts it, so registry slots are indices into steps until the model
+    // is changed
+    int index = attackStep.registryIndex;
+    if (index >= 0 && index < steps.length && steps[index] == attackStep) {
+      return index;
+    }
+    synchronized (this) {
+      if (indices == null) {
+        indices = new IdentityHashMap<>(steps.length);
+        for (int i = 0; i < steps.length; i++) {
+          indices.put(steps[i], i);
+        }
+      }
+      return indices.getOrDefault(attackStep, -1);
+    }
+  }
+
+  public AttackStep step(int index) {
+    return steps[index];
+  }
+
+  public int size() {
+    return steps.length;
+  }
+}
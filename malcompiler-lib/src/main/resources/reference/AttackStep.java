@@ -18,41 +18,137 @@ public class AttackStep {
   // thus amounting to an attacker capability profile.
   public static final double oneSecond = 0.00001157407;
   public static final double infinity = Double.MAX_VALUE;
+  // Only valid if the epoch of the step is the current epoch of the model, see ttc()
   public double ttc = Double.MAX_VALUE;
-  public Set<AttackStep> expectedParents = new HashSet<>();
-  public Set<AttackStep> visitedParents = new HashSet<>();
-  public static List<AttackStep> allAttackSteps = new ArrayList<>();
+  // Expected parents not visited yet, and visited parents. Only recorded when the model context
+  // records parents, and allocated when the first parent is recorded.
+  public Set<AttackStep> expectedParents = Collections.emptySet();
+  public Set<AttackStep> visitedParents = Collections.emptySet();
+  // Attack steps of the current model context
+  public static List<AttackStep> allAttackSteps = ModelContext.currentView(c -> c.attackSteps);
+  protected final ModelContext modelContext = ModelContext.current();
   public String assetName;
   public String assetClassName;
-  private int explanationDepth = 10;
-  private boolean explained = false;
-  protected static Map<String, Double> ttcHashMap = new HashMap<>();
+  private static final int explanationDepth = 10;
+  private static final Map<String, Integer> ttcIndices = new HashMap<>();
 
   public boolean initiallyCompromised;
 
+  // Position in the attacker's AttackStepQueue, -1 when not queued
+  int queueIndex = -1;
+  // Starts out in an older epoch, so that the step is refreshed when it is first used
+  private int epoch = modelContext.epoch - 1;
+  // Number of parents() not visited yet in the current epoch
+  int remainingParents;
+  // Slot in the attack step registry of the model context, -1 when not registered
+  int registryIndex = -1;
+
   public AttackStep() {
     this("Anonymous");
   }
 
   public AttackStep(String name) {
     this.assetName = name;
-    allAttackSteps.add(this);
+    modelContext.attackSteps.add(this);
+  }
+
+  /** Removes this step from the model. */
+  public void unregister() {
+    modelContext.attackSteps.remove(this);
+  }
+
+  /** Returns the attack steps this step reaches. */
+  protected Set<AttackStep> children() {
+    return Collections.emptySet();
+  }
+
+  /** Returns the attack steps this step can be reached from. */
+  protected Set<AttackStep> parents() {
+    return Collections.emptySet();
   }
 
-  protected void setExpectedParents() {}
+  /** Records the parents of this step as expected parents, for explaining the simulation. */
+  protected void setExpectedParents() {
+    for (AttackStep parent : parents()) {
+      addExpectedParent(parent);
+    }
+  }
 
-  public void updateChildren(Set<AttackStep> activeAttackSteps) {}
+  public void updateChildren(AttackStepQueue activeAttackSteps) {
+    for (AttackStep child : children()) {
+      child.updateTtc(this, ttc, activeAttackSteps);
+    }
+  }
 
-  public void updateTtc(AttackStep parent, double parentTtc, Set<AttackStep> activeAttackSteps) {}
+  public void updateTtc(AttackStep parent, double parentTtc, AttackStepQueue activeAttackSteps) {}
 
   protected void addExpectedParent(AttackStep parent) {
+    if (!modelContext.recordParents) {
+      return;
+    }
+    if (expectedParents.isEmpty()) {
+      expectedParents = new HashSet<>();
+    }
     expectedParents.add(parent);
   }
 
+  /**
+   * Counts a visit from {@code parent}, and returns the number of parents that are still expected.
+   */
+  protected int visitParent(AttackStep parent) {
+    if (modelContext.recordParents) {
+      expectedParents.remove(parent);
+      if (visitedParents.isEmpty()) {
+        visitedParents = new HashSet<>();
+      }
+      visitedParents.add(parent);
+    }
+    if (parents().contains(parent)) {
+      remainingParents--;
+    }
+    return remainingParents;
+  }
+
   public double localTtc() {
     return oneSecond;
   }
 
+  /** Returns the local ttc of the attack step type {@code ordinal} in the current profile. */
+  protected double localTtc(int ordinal) {
+    double[] localTtcs = modelContext.localTtcs;
+    return ordinal < localTtcs.length ? localTtcs[ordinal] : 0;
+  }
+
+  /**
+   * Returns the ordinal of this step's type in the compiled profile, or -1 if the step has a fixed
+   * local ttc.
+   */
+  protected int ttcOrdinal() {
+    return -1;
+  }
+
+  /**
+   * Returns the ordinal of the attack step type {@code name}, on the form "Asset.attackStep",
+   * assigning the next free ordinal the first time a name is seen. Generated assets call this once
+   * per attack step type when they are initialized, so that {@code localTtc()} is an array load.
+   */
+  public static synchronized int ttcIndex(String name) {
+    Integer index = ttcIndices.get(name);
+    if (index == null) {
+      index = ttcIndices.size();
+      ttcIndices.put(name, index);
+    }
+    return index;
+  }
+
+  static synchronized int findTtcIndex(String name) {
+    return ttcIndices.getOrDefault(name, -1);
+  }
+
+  static synchronized int ttcIndexCount() {
+    return ttcIndices.size();
+  }
+
   public String attackStepName() {
     return decapitalize(
         this.toString()
@@ -64,7 +160,7 @@ public class AttackStep {
   }
 
   public Asset asset() {
-    for (Asset asset : Asset.allAssets) {
+    for (Asset asset : modelContext.assets) {
       if (asset.name.equals(assetName)) {
         return asset;
       }
@@ -74,6 +170,7 @@ public class AttackStep {
   }
 
   public void assertCompromisedInstantaneously() {
+    refresh();
     if (ttc < 1.0 / 1440) {
       System.out.println("+ " + fullName() + " was reached instantaneously as expected.");
     } else {
@@ -85,6 +182,7 @@ public class AttackStep {
   }
 
   public void assertCompromisedWithEffort() {
+    refresh();
     if (ttc >= 1.0 / 1440 && ttc < 1000) {
       System.out.println(
           "+ " + fullName() + " was reached in " + Double.toString(ttc) + " days, as expected.");
@@ -100,6 +198,7 @@ public class AttackStep {
   }
 
   public void assertCompromisedInNDays(Double nDays) {
+    refresh();
     if (ttc >= nDays && ttc < nDays + 1) {
       System.out.println(
           "+ " + fullName() + " was reached in " + Double.toString(ttc) + " days, as expected.");
@@ -119,6 +218,7 @@ public class AttackStep {
   }
 
   public void assertUncompromised() {
+    refresh();
     if (ttc == Double.MAX_VALUE) {
       System.out.println("+ " + fullName() + " was not reached, as expected.");
     } else {
@@ -131,6 +231,8 @@ public class AttackStep {
   }
 
   public void assertUncompromisedFrom(AttackStep expectedParent) {
+    refresh();
+    expectedParent.refresh();
     if ((abs(ttc - expectedParent.ttc) == Double.MAX_VALUE)
         || (ttc == Double.MAX_VALUE && expectedParent.ttc == Double.MAX_VALUE)) {
       System.out.println(
@@ -162,6 +264,8 @@ public class AttackStep {
   }
 
   public void assertCompromisedInstantaneouslyFrom(AttackStep expectedParent) {
+    refresh();
+    expectedParent.refresh();
     if (Math.abs(ttc - expectedParent.ttc) < 0.1) {
       System.out.println(
           "+ "
@@ -189,6 +293,8 @@ public class AttackStep {
   }
 
   public void assertCompromisedWithEffortFrom(AttackStep expectedParent) {
+    refresh();
+    expectedParent.refresh();
     if (Math.abs(ttc - expectedParent.ttc) >= 0.1 && ttc < Double.MAX_VALUE) {
       System.out.println(
           "+ "
@@ -218,11 +324,28 @@ public class AttackStep {
     }
   }
 
-  void reset() {
-    ttc = Double.MAX_VALUE;
+  /**
+   * Brings the step to the current epoch of the model, resetting it if it has not been used since
+   * the model was last reset.
+   */
+  void refresh() {
+    if (epoch != modelContext.epoch) {
+      epoch = modelContext.epoch;
+      ttc = Double.MAX_VALUE;
+      expectedParents.clear();
+      visitedParents.clear();
+      remainingParents = parents().size();
+      initiallyCompromised = false;
+    }
+  }
+
+  /** Returns the ttc of this step, or {@link #infinity} if it has not been reached since reset. */
+  public double ttc() {
+    return epoch == modelContext.epoch ? ttc : infinity;
   }
 
   private void explainCompromise(String indent, int remainingExplanationSteps) {
+    refresh();
     if (remainingExplanationSteps >= 0) {
       if (ttc != AttackStep.infinity) {
         System.out.print(
@@ -234,8 +357,6 @@ public class AttackStep {
           System.out.print("OR");
         }
         System.out.print(") because ");
-        // if (!explained) {
-        explained = true;
         for (AttackStep parent : this.visitedParents) {
           System.out.print(
               " parent: " + parent.fullName() + " [" + Double.toString(parent.ttc) + "], ");
@@ -246,12 +367,12 @@ public class AttackStep {
             parent.explainCompromise(indent + "  ", remainingExplanationSteps - 1);
           }
         }
-        // }
       }
     }
   }
 
   private void explainUncompromise(String indent, int remainingExplanationSteps) {
+    refresh();
     System.out.print(Integer.toString(remainingExplanationSteps) + " remaining explanation steps.");
     if (remainingExplanationSteps >= 0) {
       if (ttc == AttackStep.infinity) {
@@ -300,6 +421,7 @@ public class AttackStep {
   }
 
   public void explain() {
+    refresh();
     System.out.println(String.format("%nExplaining uncompromise:"));
     explainUncompromise("", explanationDepth);
     System.out.println(String.format("%nExplaining compromise:"));
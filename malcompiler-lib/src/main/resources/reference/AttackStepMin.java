@@ -1,16 +1,14 @@
 package core;
 
-import java.util.Set;
-
 public class AttackStepMin extends AttackStep {
   public AttackStepMin(String name) {
     super(name);
   }
 
   @Override
-  public void updateTtc(AttackStep parent, double parentTtc, Set<AttackStep> activeAttackSteps) {
-    expectedParents.remove(parent);
-    visitedParents.add(parent);
+  public void updateTtc(AttackStep parent, double parentTtc, AttackStepQueue activeAttackSteps) {
+    refresh();
+    visitParent(parent);
     if (parentTtc + localTtc() < ttc) {
       ttc = parentTtc + localTtc();
       activeAttackSteps.add(this);
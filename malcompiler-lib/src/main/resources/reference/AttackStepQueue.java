@@ -0,0 +1,141 @@
+package core;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Indexed 4-ary min-heap of attack steps ordered by {@link AttackStep#ttc}.
+ *
+ * <p>Each step remembers its own position in the heap, so adding a step that is already queued
+ * after lowering its ttc is a decrease-key instead of a duplicate entry.
+ */
+public class AttackStepQueue implements Iterable<AttackStep> {
+  private static final int ARITY = 4;
+
+  private AttackStep[] heap = new AttackStep[16];
+  private int size = 0;
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean contains(AttackStep attackStep) {
+    int index = attackStep.queueIndex;
+    return index >= 0 && index < size && heap[index] == attackStep;
+  }
+
+  /**
+   * Adds {@code attackStep} to the queue, or moves it to its new position if it is already queued
+   * and its ttc has changed.
+   */
+  public void add(AttackStep attackStep) {
+    if (contains(attackStep)) {
+      int index = siftUp(attackStep.queueIndex);
+      siftDown(index);
+      return;
+    }
+    if (size == heap.length) {
+      heap = Arrays.copyOf(heap, size * 2);
+    }
+    heap[size] = attackStep;
+    attackStep.queueIndex = size;
+    siftUp(size++);
+  }
+
+  /** Removes and returns the step with the shortest ttc, or {@code null} if the queue is empty. */
+  public AttackStep poll() {
+    if (size == 0) {
+      return null;
+    }
+    AttackStep first = heap[0];
+    first.queueIndex = -1;
+    AttackStep last = heap[--size];
+    heap[size] = null;
+    if (size > 0) {
+      heap[0] = last;
+      last.queueIndex = 0;
+      siftDown(0);
+    }
+    return first;
+  }
+
+  public void clear() {
+    for (int i = 0; i < size; i++) {
+      heap[i].queueIndex = -1;
+      heap[i] = null;
+    }
+    size = 0;
+  }
+
+  private int siftUp(int index) {
+    AttackStep attackStep = heap[index];
+    while (index > 0) {
+      int parent = (index - 1) / ARITY;
+      if (heap[parent].ttc <= attackStep.ttc) {
+        break;
+      }
+      place(heap[parent], index);
+      index = parent;
+    }
+    place(attackStep, index);
+    return index;
+  }
+
+  private void siftDown(int index) {
+    AttackStep attackStep = heap[index];
+    while (true) {
+      int first = index * ARITY + 1;
+      if (first >= size) {
+        break;
+      }
+      int last = Math.min(first + ARITY, size);
+      int smallest = first;
+      for (int child = first + 1; child < last; child++) {
+        if (heap[child].ttc < heap[smallest].ttc) {
+          smallest = child;
+        }
+      }
+      if (heap[smallest].ttc >= attackStep.ttc) {
+        break;
+      }
+      place(heap[smallest], index);
+      index = smallest;
+    }
+    place(attackStep, index);
+  }
+
+  private void place(AttackStep attackStep, int index) {
+    heap[index] = attackStep;
+    attackStep.queueIndex = index;
+  }
+
+  @Override
+  public Iterator<AttackStep> iterator() {
+    return new Iterator<>() {
+      private int next = 0;
+
+      @Override
+      public boolean hasNext() {
+        return next < size;
+      }
+
+      @Override
+      public AttackStep next() {
+        if (next >= size) {
+          throw new NoSuchElementException();
+        }
+        return heap[next++];
+      }
+    };
+  }
+
+  @Override
+  public String toString() {
+    return Arrays.toString(Arrays.copyOf(heap, size));
+  }
+}
@@ -4,11 +4,12 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.URISyntaxException;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.HashSet;
-import java.util.Map;
+import java.util.LinkedHashSet;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -16,10 +17,13 @@ public class Attacker {
   private static final Pattern distributionPattern =
       Pattern.compile("^([a-zA-Z]+)(?:\\((?:([0-9.]+)(?:, ([0-9.]+))?)?\\))?$");
 
-  protected Set<AttackStep> activeAttackSteps = new HashSet<>();
+  protected AttackStepQueue activeAttackSteps = new AttackStepQueue();
+  // Kept between attacks, so that the model can be attacked again
+  protected Set<AttackStep> attackPoints = new LinkedHashSet<>();
   public boolean verbose = false;
   private static final String defaultProfile = "attackerProfile.ttc";
-  protected static Map<String, Double> ttcHashMap = new HashMap<>();
+  // The model this attacker attacks
+  protected final ModelContext modelContext = ModelContext.current();
 
   public Attacker() {
     verbose = false;
@@ -30,9 +34,13 @@ public class Attacker {
   }
 
   public void addAttackPoint(AttackStep attackPoint) {
-    attackPoint.ttc = 0;
-	attackPoint.initiallyCompromised = false;
-    activeAttackSteps.add(attackPoint);
+    attackPoints.add(attackPoint);
+  }
+
+  private void start(AttackStep attackStep) {
+    attackStep.refresh();
+    attackStep.ttc = 0;
+    activeAttackSteps.add(attackStep);
   }
 
   public void addRandomAttackPoint(long randomSeed) {
@@ -41,22 +49,12 @@ public class Attacker {
     addAttackPoint(attackPoint);
   }
 
-  private AttackStep getShortestActiveStep() {
-    AttackStep shortestStep = null;
-    double shortestTtc = Double.MAX_VALUE;
-    for (AttackStep attackStep : activeAttackSteps) {
-      if (attackStep.ttc < shortestTtc) {
-        shortestTtc = attackStep.ttc;
-        shortestStep = attackStep;
-      }
-    }
-    return shortestStep;
-  }
-
+  /**
+   * Marks every attack step of the model as not reached. This is a single increment of the epoch
+   * of the model, the steps are reset lazily when they are next used.
+   */
   public void reset() {
-    for (AttackStep attackStep : AttackStep.allAttackSteps) {
-      attackStep.ttc = Double.MAX_VALUE;
-    }
+    modelContext.epoch++;
   }
 
   private void debugPrint(String str) {
@@ -66,7 +64,9 @@ public class Attacker {
   }
 
   public void customizeTtc(String name, String distribution) {
-    ttcHashMap.put(name, Attacker.parseDistribution(distribution, isDefense(name)));
+    modelContext.customTtcs.put(
+        name, Attacker.parseDistribution(distribution, isDefense(name, defenseNames())));
+    modelContext.customDistributions.put(name, distribution);
   }
 
   public static double parseDistribution(String dist, boolean defense) {
@@ -110,43 +110,54 @@ public class Attacker {
     }
   }
 
-  private boolean isDefense(String name) {
-    name = Character.toLowerCase(name.charAt(0)) + name.substring(1);
-    for (Defense defense : Defense.allDefenses) {
-      if (defense.disable.fullName().equals(name)) {
-        return true;
-      }
+  private Set<String> defenseNames() {
+    Set<String> defenseNames = new HashSet<>();
+    for (Defense defense : modelContext.defenses) {
+      defenseNames.add(defense.disable.fullName());
     }
-    return false;
+    return defenseNames;
+  }
+
+  private static boolean isDefense(String name, Set<String> defenseNames) {
+    name = Character.toLowerCase(name.charAt(0)) + name.substring(1);
+    return defenseNames.contains(name);
   }
 
-  private Map<String, Double> readProfile(Properties profile) {
-    Map<String, Double> profileMap = new HashMap<>();
+  /**
+   * Compiles the profile into an array of local ttcs indexed by {@link AttackStep#ttcIndex}.
+   * Attack step types missing from the profile get a local ttc of 0.
+   */
+  private double[] readProfile(Properties profile) {
+    Set<String> defenseNames = defenseNames();
+    double[] localTtcs = new double[AttackStep.ttcIndexCount()];
     for (String name : profile.stringPropertyNames()) {
+      int index = AttackStep.findTtcIndex(name);
+      if (index < 0 || index >= localTtcs.length) {
+        // No attack step of this type has been loaded
+        continue;
+      }
       // Local ttc overrides ttcfile
-      if (ttcHashMap.containsKey(name)) {
-        profileMap.put(name, ttcHashMap.get(name));
+      if (modelContext.customTtcs.containsKey(name)) {
+        localTtcs[index] = modelContext.customTtcs.get(name);
       } else {
-        profileMap.put(name, parseDistribution(profile.getProperty(name), isDefense(name)));
+        localTtcs[index] =
+            parseDistribution(profile.getProperty(name), isDefense(name, defenseNames));
       }
     }
-    ttcHashMap.clear();
-    return profileMap;
+    modelContext.customTtcs.clear();
+    modelContext.customDistributions.clear();
+    return localTtcs;
   }
 
-  public void attack() {
+  private File defaultProfileFile() {
     try {
-      attack(new File(getClass().getClassLoader().getResource(defaultProfile).toURI()));
+      return new File(getClass().getClassLoader().getResource(defaultProfile).toURI());
     } catch (URISyntaxException e) {
       throw new RuntimeException(e);
     }
   }
 
-  public void attack(String profilePath) {
-    attack(new File(profilePath));
-  }
-
-  public void attack(File profileFile) {
+  private static Properties loadProfile(File profileFile) {
     Properties profile = new Properties();
     try {
       profile.load(new FileInputStream(profileFile));
@@ -154,48 +165,111 @@ public class Attacker {
       System.err.println("Could not open profile: " + profileFile.getPath());
       System.exit(1);
     }
-    attack(profile);
+    return profile;
+  }
+
+  public void attack() {
+    attack(defaultProfileFile());
+  }
+
+  public void attack(String profilePath) {
+    attack(new File(profilePath));
+  }
+
+  public void attack(File profileFile) {
+    attack(loadProfile(profileFile));
   }
 
   public void attack(Properties profile) {
-    AttackStep.ttcHashMap = readProfile(profile);
+    reset();
+    modelContext.localTtcs = readProfile(profile);
     debugPrint("debug attacking");
-
-	Set<AttackStep> startingPoints = new HashSet<>(activeAttackSteps.size());
-	startingPoints.addAll(activeAttackSteps);
+    activeAttackSteps.clear();
+    for (AttackStep attackPoint : attackPoints) {
+      start(attackPoint);
+    }
 
     debugPrint(
         String.format(
             "The model contains %d assets and %d attack steps.",
-            Asset.allAssets.size(), AttackStep.allAttackSteps.size()));
+            modelContext.assets.size(), modelContext.attackSteps.size()));
     AttackStep currentAttackStep = null;
-    debugPrint(String.format("AttackStep.allAttackSteps = %s", AttackStep.allAttackSteps));
-
-    for (AttackStep attackStep : AttackStep.allAttackSteps) {
-      attackStep.setExpectedParents();
-      debugPrint(
-          String.format(
-              "The expected parents of %s are %s",
-              attackStep.fullName(), attackStep.expectedParents));
+    debugPrint(String.format("AttackStep.allAttackSteps = %s", modelContext.attackSteps));
+
+    if (modelContext.recordParents) {
+      for (AttackStep attackStep : modelContext.attackSteps) {
+        attackStep.refresh();
+        attackStep.setExpectedParents();
+        debugPrint(
+            String.format(
+                "The expected parents of %s are %s",
+                attackStep.fullName(), attackStep.expectedParents));
+      }
     }
 
-    for (Defense defense : Defense.allDefenses) {
+    for (Defense defense : modelContext.defenses) {
       if (!defense.isEnabled()) {
-        addAttackPoint(defense.disable);
+        start(defense.disable);
       }
     }
 
     while (!activeAttackSteps.isEmpty()) {
       debugPrint(String.format("activeAttackSteps = %s", activeAttackSteps));
-      currentAttackStep = getShortestActiveStep();
+      currentAttackStep = activeAttackSteps.poll();
       debugPrint(String.format("Updating children of %s", currentAttackStep.fullName()));
       currentAttackStep.updateChildren(activeAttackSteps);
-      activeAttackSteps.remove(currentAttackStep);
     }
 
-	// Set initially enabled steps
-	for (AttackStep step : startingPoints) {
-		step.initiallyCompromised = true;
-	}
+    // Set initially enabled steps
+    for (AttackStep attackPoint : attackPoints) {
+      attackPoint.initiallyCompromised = true;
+    }
+  }
+
+  /**
+   * Freezes the model and the attack points into an {@link AttackGraph} with the local ttcs of the
+   * default profile, for simulating it repeatedly with {@link Simulation}.
+   */
+  public AttackGraph freeze() {
+    return freeze(loadProfile(defaultProfileFile()));
+  }
+
+  public AttackGraph freeze(Properties profile) {
+    modelContext.localTtcs = readProfile(profile);
+    return new AttackGraph(modelContext, attackPoints);
+  }
+
+  /**
+   * Simulates {@code samples} attacks from the attack points, drawing local ttcs from the
+   * distributions of the default profile, and tracks the ttc of every attack step.
+   */
+  public MonteCarlo.Result sample(int samples, long seed) {
+    return sample(loadProfile(defaultProfileFile()), samples, seed);
+  }
+
+  public MonteCarlo.Result sample(Properties profile, int samples, long seed) {
+    return sample(profile, samples, seed, modelContext.attackSteps);
+  }
+
+  /**
+   * Simulates {@code samples} attacks from the attack points in parallel, drawing local ttcs from
+   * the distributions of {@code profile}. The ttc quantiles are only kept for {@code trackedSteps},
+   * since that takes memory proportional to the number of samples per step.
+   */
+  public MonteCarlo.Result sample(
+      Properties profile, int samples, long seed, Collection<AttackStep> trackedSteps) {
+    debugPrint(String.format("debug sampling %d attacks", samples));
+    MonteCarlo.Result result =
+        MonteCarlo.run(
+            modelContext,
+            attackPoints,
+            profile,
+            trackedSteps,
+            samples,
+            seed,
+            ForkJoinPool.commonPool());
+    modelContext.customTtcs.clear();
+    modelContext.customDistributions.clear();
+    return result;
   }
 }
@@ -1,19 +1,30 @@
 package core;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.List;
 
 public class Defense {
   public AttackStep disable;
   public boolean defaultValue;
-  public static Set<Defense> allDefenses = new HashSet<>();
+  // Defenses of the current model context
+  public static List<Defense> allDefenses = ModelContext.currentView(c -> c.defenses);
+  protected final ModelContext modelContext = ModelContext.current();
   String assetName = "Anonymous";
+  // Slot in the defense registry of the model context, -1 when not registered
+  int registryIndex = -1;
 
   public Defense(String name) {
-    allDefenses.add(this);
+    modelContext.defenses.add(this);
     this.assetName = name;
   }
 
+  /** Removes this defense and its disable step from the model. */
+  public void unregister() {
+    if (disable != null) {
+      disable.unregister();
+    }
+    modelContext.defenses.remove(this);
+  }
+
   public boolean isEnabled() {
     return defaultValue;
   }
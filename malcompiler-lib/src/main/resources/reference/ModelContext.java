@@ -0,0 +1,133 @@
+package core;
+
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Registries and attacker profile of one instance model.
+ *
+ * <p>Assets, attack steps and defenses register themselves in the context that is current for the
+ * thread creating them, and stay in that context. Every thread starts out in the shared default
+ * context, which is the one the static registries such as {@link AttackStep#allAttackSteps} refer
+ * to. Building and attacking a model inside {@link #run} or {@link #call} of its own context keeps
+ * it apart from all other models, so independent models can be simulated concurrently on separate
+ * threads.
+ */
+public class ModelContext {
+  private static final ModelContext defaultContext = new ModelContext();
+  private static final ThreadLocal<ModelContext> current =
+      ThreadLocal.withInitial(() -> defaultContext);
+
+  public final Registry<Asset> assets =
+      new Registry<>(Asset.class, a -> a.registryIndex, (a, i) -> a.registryIndex = i);
+  public final Registry<AttackStep> attackSteps =
+      new Registry<>(AttackStep.class, s -> s.registryIndex, (s, i) -> s.registryIndex = i);
+  public final Registry<Defense> defenses =
+      new Registry<>(Defense.class, d -> d.registryIndex, (d, i) -> d.registryIndex = i);
+  // Local ttc of every attack step type, indexed by the ordinals handed out by ttcIndex()
+  double[] localTtcs = new double[0];
+  // Steps whose epoch is not the current epoch have not been reached since the last reset
+  int epoch = 0;
+  /**
+   * Whether attack steps record their expected and visited parents, which is only needed by {@link
+   * AttackStep#explain()} and the coverage targets. Turning it off saves two sets per reached step
+   * on large models.
+   */
+  public boolean recordParents = true;
+  // Set by Attacker.customizeTtc, override the profile in the next simulation
+  final Map<String, Double> customTtcs = new HashMap<>();
+  final Map<String, String> customDistributions = new HashMap<>();
+
+  /** Returns the context new model elements of the calling thread are registered in. */
+  public static ModelContext current() {
+    return current.get();
+  }
+
+  public static ModelContext defaultContext() {
+    return defaultContext;
+  }
+
+  /** Runs {@code action} with this context as the current context of the calling thread. */
+  public void run(Runnable action) {
+    call(
+        () -> {
+          action.run();
+          return null;
+        });
+  }
+
+  /** Calls {@code action} with this context as the current context of the calling thread. */
+  public <T> T call(Supplier<T> action) {
+    ModelContext previous = current.get();
+    current.set(this);
+    try {
+      return action.get();
+    } finally {
+      current.set(previous);
+    }
+  }
+
+  /** Removes all assets, attack steps and defenses from this context. */
+  public void clear() {
+    assets.clear();
+    attackSteps.clear();
+    defenses.clear();
+  }
+
+  /** Returns a list that always refers to the registry of the current context. */
+  static <T> List<T> currentView(Function<ModelContext, Registry<T>> registry) {
+    return new CurrentView<>(registry);
+  }
+
+  private static class CurrentView<T> extends AbstractList<T> {
+    private final Function<ModelContext, Registry<T>> registry;
+
+    CurrentView(Function<ModelContext, Registry<T>> registry) {
+      this.registry = registry;
+    }
+
+    private Registry<T> registry() {
+      return registry.apply(current());
+    }
+
+    @Override
+    public T get(int index) {
+      return registry().get(index);
+    }
+
+    @Override
+    public int size() {
+      return registry().size();
+    }
+
+    @Override
+    public boolean add(T element) {
+      return registry().add(element);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      return registry().contains(o);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+      return registry().remove(o);
+    }
+
+    @Override
+    public void clear() {
+      registry().clear();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+      return registry().iterator();
+    }
+  }
+}
@@ -0,0 +1,378 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Monte Carlo simulation of the attacker. Every sample draws the local ttc of each attack step it
+ * reaches from the distribution in the attacker profile, instead of using the mean of the
+ * distribution, and computes the ttc of every step like {@link Attacker#attack()} does.
+ *
+ * <p>Samples are simulated in parallel on a {@link ForkJoinPool}. Sample {@code i} always uses the
+ * {@code i}:th {@link SplittableRandom} split from the seed, so the result only depends on the
+ * model, the profile, the number of samples and the seed.
+ */
+public final class MonteCarlo {
+  private static final double MAX = Double.MAX_VALUE;
+
+  private final AttackGraph graph;
+  // Sampler of every attack step type, indexed by ttc ordinal
+  private final Sampler[] samplers;
+  private final int[] tracked;
+  private final int samples;
+  private final SplittableRandom[] randoms;
+  private final double[][] ttcs;
+
+  private MonteCarlo(AttackGraph graph, Sampler[] samplers, int[] tracked, int samples, long seed) {
+    this.graph = graph;
+    this.samplers = samplers;
+    this.tracked = tracked;
+    this.samples = samples;
+    this.randoms = new SplittableRandom[samples];
+    SplittableRandom random = new SplittableRandom(seed);
+    for (int i = 0; i < samples; i++) {
+      randoms[i] = random.split();
+    }
+    this.ttcs = new double[tracked.length][samples];
+  }
+
+  /**
+   * Simulates {@code samples} attacks on a model, starting from {@code attackPoints}.
+   *
+   * @param modelContext, model to attack, holding the distributions overriding the profile
+   * @param attackPoints, steps compromised at time 0
+   * @param profile, attacker profile with the distribution of every attack step type
+   * @param trackedSteps, steps to record the ttc of in every sample, for quantiles
+   * @param samples, number of samples
+   * @param seed, seed of the random number generator
+   * @param pool, pool to run the samples in
+   */
+  static Result run(
+      ModelContext modelContext,
+      Iterable<AttackStep> attackPoints,
+      Properties profile,
+      Collection<AttackStep> trackedSteps,
+      int samples,
+      long seed,
+      ForkJoinPool pool) {
+    if (samples <= 0) {
+      throw new IllegalArgumentException("The number of samples must be positive");
+    }
+    AttackGraph graph = new AttackGraph(modelContext, attackPoints);
+    Map<String, String> customDistributions = modelContext.customDistributions;
+    Sampler[] samplers = new Sampler[AttackStep.ttcIndexCount()];
+    Arrays.fill(samplers, Sampler.ZERO);
+    for (String name : profile.stringPropertyNames()) {
+      int index = AttackStep.findTtcIndex(name);
+      if (index >= 0 && index < samplers.length) {
+        samplers[index] =
+            Sampler.parse(customDistributions.getOrDefault(name, profile.getProperty(name)));
+      }
+    }
+    List<Integer> tracked = new ArrayList<>(trackedSteps.size());
+    for (AttackStep attackStep : trackedSteps) {
+      int index = graph.indexOf(attackStep);
+      if (index >= 0) {
+        tracked.add(index);
+      }
+    }
+    MonteCarlo monteCarlo =
+        new MonteCarlo(
+            graph, samplers, tracked.stream().mapToInt(Integer::intValue).toArray(), samples, seed);
+    int grain = Math.max(1, samples / (pool.getParallelism() * 4));
+    int[] compromised = pool.invoke(monteCarlo.new Task(0, samples, grain));
+    for (double[] row : monteCarlo.ttcs) {
+      Arrays.sort(row);
+    }
+    return new Result(graph, monteCarlo.tracked, monteCarlo.ttcs, compromised, samples);
+  }
+
+  /** Simulates a range of samples, splitting it while it is larger than the grain. */
+  private class Task extends RecursiveTask<int[]> {
+    private static final long serialVersionUID = 1L;
+    private final int from;
+    private final int to;
+    private final int grain;
+
+    Task(int from, int to, int grain) {
+      this.from = from;
+      this.to = to;
+      this.grain = grain;
+    }
+
+    @Override
+    protected int[] compute() {
+      if (to - from <= grain) {
+        Workspace workspace = new Workspace();
+        for (int sample = from; sample < to; sample++) {
+          workspace.simulate(sample);
+        }
+        return workspace.compromised;
+      }
+      int middle = (from + to) >>> 1;
+      Task left = new Task(from, middle, grain);
+      left.fork();
+      int[] compromised = new Task(middle, to, grain).compute();
+      int[] other = left.join();
+      for (int i = 0; i < compromised.length; i++) {
+        compromised[i] += other[i];
+      }
+      return compromised;
+    }
+  }
+
+  /** Simulation drawing the local ttcs of the steps from the samplers, reused between samples. */
+  private class Workspace extends Simulation {
+    private final int[] compromised = new int[graph.size()];
+    private SplittableRandom random;
+
+    Workspace() {
+      super(MonteCarlo.this.graph);
+    }
+
+    void simulate(int sample) {
+      random = randoms[sample];
+      run();
+      for (int i = 0; i < compromisedCount(); i++) {
+        compromised[compromised(i)]++;
+      }
+      for (int i = 0; i < tracked.length; i++) {
+        ttcs[i][sample] = ttc(tracked[i]);
+      }
+    }
+
+    @Override
+    protected double localTtc(int step) {
+      int ordinal = graph.ttcOrdinal[step];
+      return ordinal < 0 || ordinal >= samplers.length
+          ? graph.localTtc[step]
+          : samplers[ordinal].sample(random);
+    }
+  }
+
+  /** Draws local ttcs from a distribution of an attacker profile. */
+  @FunctionalInterface
+  interface Sampler {
+    Sampler ZERO = random -> 0;
+    Sampler INFINITY = random -> MAX;
+
+    double sample(SplittableRandom random);
+
+    /**
+     * Returns a sampler of {@code distribution}, on the form written to the attacker profile by the
+     * compiler, e.g. "Exponential(0.1)" or "EasyAndUncertain".
+     */
+    static Sampler parse(String distribution) {
+      String dist = distribution.trim();
+      String name = dist;
+      double[] params = new double[0];
+      int open = dist.indexOf('(');
+      try {
+        if (open >= 0 && dist.endsWith(")")) {
+          name = dist.substring(0, open);
+          String args = dist.substring(open + 1, dist.length() - 1).trim();
+          if (!args.isEmpty()) {
+            params = Arrays.stream(args.split(",")).mapToDouble(Double::parseDouble).toArray();
+          }
+        }
+        return create(name, params);
+      } catch (RuntimeException e) {
+        System.err.println(String.format("No matching distribution for: %s", distribution));
+        return ZERO;
+      }
+    }
+
+    private static Sampler create(String name, double[] params) {
+      switch (name) {
+        case "Bernoulli":
+          return bernoulli(params[0]);
+        case "Binomial":
+          return binomial((int) params[0], params[1]);
+        case "Exponential":
+          return exponential(params[0]);
+        case "Gamma":
+          {
+            double shape = params[0];
+            double scale = params[1];
+            return random -> gamma(random, shape) * scale;
+          }
+        case "LogNormal":
+          {
+            double mean = params[0];
+            double standardDeviation = params[1];
+            return random -> Math.exp(mean + standardDeviation * normal(random));
+          }
+        case "Pareto":
+          {
+            double min = params[0];
+            double shape = params[1];
+            return random -> min / Math.pow(1 - random.nextDouble(), 1 / shape);
+          }
+        case "TruncatedNormal":
+          {
+            double mean = params[0];
+            double standardDeviation = params[1];
+            return random -> truncatedNormal(random, mean, standardDeviation);
+          }
+        case "Uniform":
+          {
+            double min = params[0];
+            double max = params[1];
+            return random -> min + (max - min) * random.nextDouble();
+          }
+        case "EasyAndCertain":
+          return exponential(1);
+        case "EasyAndUncertain":
+          return bernoulli(0.5);
+        case "HardAndCertain":
+          return exponential(0.1);
+        case "HardAndUncertain":
+          return sum(bernoulli(0.5), exponential(0.1));
+        case "VeryHardAndCertain":
+          return exponential(0.01);
+        case "VeryHardAndUncertain":
+          return sum(bernoulli(0.5), exponential(0.01));
+        case "Infinity":
+          return INFINITY;
+        case "Zero":
+          return ZERO;
+        default:
+          throw new IllegalArgumentException(name);
+      }
+    }
+
+    // A successful Bernoulli trial makes the step possible instantly, a failed one makes it
+    // impossible
+    private static Sampler bernoulli(double probability) {
+      return random -> random.nextDouble() < probability ? 0 : MAX;
+    }
+
+    private static Sampler binomial(int trials, double probability) {
+      return random -> {
+        int successes = 0;
+        for (int i = 0; i < trials; i++) {
+          if (random.nextDouble() < probability) {
+            successes++;
+          }
+        }
+        return successes;
+      };
+    }
+
+    private static Sampler exponential(double lambda) {
+      return random -> -Math.log(1 - random.nextDouble()) / lambda;
+    }
+
+    private static Sampler sum(Sampler first, Sampler second) {
+      return random -> {
+        double value = first.sample(random);
+        return value >= MAX ? MAX : value + second.sample(random);
+      };
+    }
+
+    /** Standard normal variate by the polar method. */
+    private static double normal(SplittableRandom random) {
+      double u;
+      double v;
+      double s;
+      do {
+        u = 2 * random.nextDouble() - 1;
+        v = 2 * random.nextDouble() - 1;
+        s = u * u + v * v;
+      } while (s >= 1 || s == 0);
+      return u * Math.sqrt(-2 * Math.log(s) / s);
+    }
+
+    private static double truncatedNormal(
+        SplittableRandom random, double mean, double standardDeviation) {
+      for (int attempt = 0; attempt < 64; attempt++) {
+        double value = mean + standardDeviation * normal(random);
+        if (value >= 0) {
+          return value;
+        }
+      }
+      return 0;
+    }
+
+    /** Gamma variate with scale 1 by the method of Marsaglia and Tsang. */
+    private static double gamma(SplittableRandom random, double shape) {
+      if (shape < 1) {
+        return gamma(random, shape + 1) * Math.pow(random.nextDouble(), 1 / shape);
+      }
+      double d = shape - 1.0 / 3;
+      double c = 1 / Math.sqrt(9 * d);
+      while (true) {
+        double x;
+        double v;
+        do {
+          x = normal(random);
+          v = 1 + c * x;
+        } while (v <= 0);
+        v = v * v * v;
+        double u = random.nextDouble();
+        if (Math.log(u) < 0.5 * x * x + d - d * v + d * Math.log(v)) {
+          return d * v;
+        }
+      }
+    }
+  }
+
+  /** Result of a Monte Carlo simulation. */
+  public static final class Result {
+    private final AttackGraph graph;
+    private final int[] trackedRow;
+    private final double[][] ttcs;
+    private final int[] compromised;
+    private final int samples;
+
+    private Result(
+        AttackGraph graph, int[] tracked, double[][] ttcs, int[] compromised, int samples) {
+      this.graph = graph;
+      this.trackedRow = new int[graph.size()];
+      Arrays.fill(trackedRow, -1);
+      for (int i = 0; i < tracked.length; i++) {
+        trackedRow[tracked[i]] = i;
+      }
+      this.ttcs = ttcs;
+      this.compromised = compromised;
+      this.samples = samples;
+    }
+
+    public int samples() {
+      return samples;
+    }
+
+    /** Returns the fraction of the samples in which {@code attackStep} was reached. */
+    public double probabilityOfCompromise(AttackStep attackStep) {
+      int index = graph.indexOf(attackStep);
+      if (index < 0) {
+        throw new IllegalArgumentException(attackStep.fullName() + " was not simulated");
+      }
+      return (double) compromised[index] / samples;
+    }
+
+    /**
+     * Returns the {@code q}-quantile of the ttc of {@code attackStep} over all samples, or {@link
+     * AttackStep#infinity} if the step was not reached in that many samples.
+     */
+    public double quantile(AttackStep attackStep, double q) {
+      if (!(q >= 0 && q <= 1)) {
+        throw new IllegalArgumentException("Quantile must be between 0 and 1, was " + q);
+      }
+      int index = graph.indexOf(attackStep);
+      if (index < 0 || trackedRow[index] < 0) {
+        throw new IllegalArgumentException(attackStep.fullName() + " was not tracked");
+      }
+      double[] row = ttcs[trackedRow[index]];
+      int rank = (int) Math.ceil(q * samples) - 1;
+      return row[Math.max(0, Math.min(samples - 1, rank))];
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package core;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * List of model elements with constant time registration and removal.
+ *
+ * <p>Every element remembers its own slot in the registry. Removing an element leaves a tombstone
+ * in its slot, and the registry is compacted lazily the first time it is read by index or
+ * iterated. Building a model therefore only appends and tombstones, and the compaction is done
+ * once for the whole model.
+ */
+public class Registry<T> extends AbstractList<T> {
+  private final Class<T> type;
+  private final ToIntFunction<T> getSlot;
+  private final ObjIntConsumer<T> setSlot;
+  private Object[] elements = new Object[16];
+  private int end = 0;
+  private int size = 0;
+
+  public Registry(Class<T> type, ToIntFunction<T> getSlot, ObjIntConsumer<T> setSlot) {
+    this.type = type;
+    this.getSlot = getSlot;
+    this.setSlot = setSlot;
+  }
+
+  /**
+   * Makes room for {@code capacity} elements, so that building a large model does not repeatedly
+   * grow the registry.
+   */
+  public void ensureCapacity(int capacity) {
+    if (capacity > elements.length) {
+      elements = Arrays.copyOf(elements, capacity);
+    }
+  }
+
+  @Override
+  public boolean add(T element) {
+    if (contains(element)) {
+      return false;
+    }
+    if (end == elements.length) {
+      elements = Arrays.copyOf(elements, Math.max(16, end * 2));
+    }
+    elements[end] = element;
+    setSlot.accept(element, end++);
+    size++;
+    modCount++;
+    return true;
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    if (!type.isInstance(o)) {
+      return false;
+    }
+    int slot = getSlot.applyAsInt(type.cast(o));
+    return slot >= 0 && slot < end && elements[slot] == o;
+  }
+
+  @Override
+  public boolean remove(Object o) {
+    if (!contains(o)) {
+      return false;
+    }
+    T element = type.cast(o);
+    int slot = getSlot.applyAsInt(element);
+    elements[slot] = null;
+    setSlot.accept(element, -1);
+    size--;
+    modCount++;
+    while (end > 0 && elements[end - 1] == null) {
+      end--;
+    }
+    return true;
+  }
+
+  @Override
+  public T get(int index) {
+    compact();
+    Objects.checkIndex(index, size);
+    return type.cast(elements[index]);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public void clear() {
+    for (int i = 0; i < end; i++) {
+      if (elements[i] != null) {
+        setSlot.accept(type.cast(elements[i]), -1);
+        elements[i] = null;
+      }
+    }
+    end = 0;
+    size = 0;
+    modCount++;
+  }
+
+  private void compact() {
+    if (end == size) {
+      return;
+    }
+    int next = 0;
+    for (int i = 0; i < end; i++) {
+      if (elements[i] != null) {
+        elements[next] = elements[i];
+        setSlot.accept(type.cast(elements[next]), next);
+        next++;
+      }
+    }
+    Arrays.fill(elements, next, end, null);
+    end = next;
+  }
+}
@@ -0,0 +1,184 @@
+package core;
+
+import java.util.Arrays;
+
+/**
+ * Simulation of the attacker over a frozen {@link AttackGraph}, for running the same model many
+ * times.
+ *
+ * <p>All state is kept in arrays allocated once per simulation object, and a step whose stamp is
+ * not the current epoch counts as not reached, so {@link #run()} neither allocates nor has to reset
+ * anything between runs. A simulation is not thread safe, but any number of simulations can share
+ * one graph.
+ */
+public class Simulation {
+  private static final double MAX = Double.MAX_VALUE;
+
+  protected final AttackGraph graph;
+  private final double[] ttc;
+  private final double[] local;
+  private final int[] remaining;
+  private final int[] stamp;
+  private final int[] heap;
+  private final int[] position;
+  // Reached steps in the order they were reached
+  private final int[] compromised;
+  private int compromisedCount = 0;
+  private int heapSize = 0;
+  private int epoch = 0;
+
+  public Simulation(AttackGraph graph) {
+    this.graph = graph;
+    int n = graph.size();
+    ttc = new double[n];
+    local = new double[n];
+    remaining = new int[n];
+    stamp = new int[n];
+    heap = new int[n];
+    position = new int[n];
+    compromised = new int[n];
+  }
+
+  /** Computes the ttc of every step, starting from the start steps of the graph. */
+  public void run() {
+    if (++epoch == 0) {
+      // The epoch has wrapped around, forget all earlier runs
+      Arrays.fill(stamp, 0);
+      epoch = 1;
+    }
+    compromisedCount = 0;
+    for (int step : graph.startSteps) {
+      touch(step);
+      if (ttc[step] > 0) {
+        ttc[step] = 0;
+        offer(step);
+      }
+    }
+    while (heapSize > 0) {
+      int step = poll();
+      compromised[compromisedCount++] = step;
+      for (int edge = graph.childStart[step]; edge < graph.childStart[step + 1]; edge++) {
+        int child = graph.children[edge];
+        byte kind = graph.kind[child];
+        if (kind == AttackGraph.NONE) {
+          continue;
+        }
+        touch(child);
+        if (kind == AttackGraph.AND) {
+          if (graph.expectedEdge[edge]) {
+            remaining[child]--;
+          }
+          if (remaining[child] > 0) {
+            continue;
+          }
+        }
+        if (local[child] >= MAX) {
+          continue;
+        }
+        double candidate = ttc[step] + local[child];
+        if (candidate < ttc[child]) {
+          ttc[child] = candidate;
+          offer(child);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the local ttc of step {@code step} in the current run. It is called once per run for
+   * each step that a reached step has an edge to.
+   */
+  protected double localTtc(int step) {
+    return graph.localTtc[step];
+  }
+
+  /** Returns the ttc of step {@code step} in the last run. */
+  public double ttc(int step) {
+    return stamp[step] == epoch ? ttc[step] : MAX;
+  }
+
+  public double ttc(AttackStep attackStep) {
+    int index = graph.indexOf(attackStep);
+    if (index < 0) {
+      throw new IllegalArgumentException(attackStep.fullName() + " is not part of the graph");
+    }
+    return ttc(index);
+  }
+
+  /** Returns the number of steps reached in the last run. */
+  public int compromisedCount() {
+    return compromisedCount;
+  }
+
+  /** Returns the {@code i}:th step reached in the last run. */
+  public int compromised(int i) {
+    return compromised[i];
+  }
+
+  /** Copies the ttcs of the last run to the attack steps of the model. */
+  public void writeBack() {
+    for (int step = 0; step < graph.size(); step++) {
+      graph.steps[step].refresh();
+      graph.steps[step].ttc = ttc(step);
+    }
+  }
+
+  private void touch(int step) {
+    if (stamp[step] == epoch) {
+      return;
+    }
+    stamp[step] = epoch;
+    ttc[step] = MAX;
+    remaining[step] = graph.expectedParents[step];
+    position[step] = -1;
+    local[step] = localTtc(step);
+  }
+
+  // Indexed binary heap of step indices ordered by ttc
+
+  private void offer(int step) {
+    int index = position[step];
+    if (index < 0) {
+      index = heapSize++;
+    }
+    while (index > 0) {
+      int parent = (index - 1) >>> 1;
+      if (ttc[heap[parent]] <= ttc[step]) {
+        break;
+      }
+      place(heap[parent], index);
+      index = parent;
+    }
+    place(step, index);
+  }
+
+  private int poll() {
+    int first = heap[0];
+    position[first] = -1;
+    int last = heap[--heapSize];
+    if (heapSize > 0) {
+      int index = 0;
+      while (true) {
+        int child = 2 * index + 1;
+        if (child >= heapSize) {
+          break;
+        }
+        if (child + 1 < heapSize && ttc[heap[child + 1]] < ttc[heap[child]]) {
+          child++;
+        }
+        if (ttc[heap[child]] >= ttc[last]) {
+          break;
+        }
+        place(heap[child], index);
+        index = child;
+      }
+      place(last, index);
+    }
+    return first;
+  }
+
+  private void place(int step, int index) {
+    heap[index] = step;
+    position[step] = index;
+  }
+}
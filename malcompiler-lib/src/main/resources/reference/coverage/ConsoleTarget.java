@@ -244,7 +244,7 @@ public class ConsoleTarget extends CoverageExtension.ExportableTarget {
 
 		// filter out defences as hidden attack steps (".Disable")
 		Map<Integer, String> compromisedStepMapWODefences = AttackStep.allAttackSteps.stream()
-				.filter(s -> s.ttc != AttackStep.infinity)
+				.filter(s -> s.ttc() != AttackStep.infinity)
 				.filter(s -> !s.getClass().getSimpleName().equals("Disable"))
 				.collect(Collectors.toMap(
 						s -> s.hashCode(),
@@ -274,7 +274,7 @@ public class ConsoleTarget extends CoverageExtension.ExportableTarget {
 
 		for (Asset asset : Asset.allAssets) {
 			for (AttackStep step : getAttackSteps(asset)) {
-				if (step.ttc != AttackStep.infinity) {
+				if (step.ttc() != AttackStep.infinity) {
 					String assetName = asset.getClass().getSimpleName();
 					usedAssetTypes.add(assetName);
 
@@ -286,7 +286,7 @@ public class ConsoleTarget extends CoverageExtension.ExportableTarget {
 				}
 			}
 			for (Defense def : getDefenses(asset)) {
-				if (def.disable.ttc != AttackStep.infinity) {
+				if (def.disable.ttc() != AttackStep.infinity) {
 					String assetName = asset.getClass().getSimpleName();
 					usedAssetTypes.add(assetName);
 					usedDefenses.add(assetName + "." + getFieldName(asset, def));
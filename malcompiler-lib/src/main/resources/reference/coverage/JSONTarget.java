@@ -388,7 +388,7 @@ public class JSONTarget extends CoverageExtension.ExportableTarget {
 				// attack steps
 				for (AttackStep step : getAttackSteps(asset)) {
 					// check whether attack step might be "disguised" defence
-					if (!step.getClass().getSimpleName().equals("Disable") && step.ttc != AttackStep.infinity) {
+					if (!step.getClass().getSimpleName().equals("Disable") && step.ttc() != AttackStep.infinity) {
 						String stepName = assetClass + "." + getFieldName(asset, step);
 						sim.usedAttackSteps.add(stepName);
 					}
@@ -646,7 +646,7 @@ public class JSONTarget extends CoverageExtension.ExportableTarget {
 				this.mName = mName;
 
 				List<AttackStep> compromised = AttackStep.allAttackSteps.stream()
-					.filter(s -> s.ttc != AttackStep.infinity)
+					.filter(s -> s.ttc() != AttackStep.infinity)
 					.collect(Collectors.toList());
 
 				for (AttackStep step : compromised) {
@@ -656,7 +656,7 @@ public class JSONTarget extends CoverageExtension.ExportableTarget {
 						initiallyCompromised.add(hash);
 					}
 
-					this.compromised.put(hash, step.ttc);
+					this.compromised.put(hash, step.ttc());
 				}
 
 				activeDefenses = Defense.allDefenses.stream()
@@ -20,9 +20,11 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.io.File;
 import java.io.IOException;
 import org.junit.jupiter.api.Test;
 import org.mal_lang.compiler.cli.Main;
+import org.mal_lang.compiler.lib.LangSerializer;
 import org.mal_lang.compiler.lib.MalInfo;
 import org.mal_lang.compiler.test.MalTest;
 
@@ -34,6 +36,11 @@ public class TestMain extends MalTest {
   private static final String superfluousArgMsg = "Error: Option %s doesn't allow an argument";
   private static final String missingFileMsg = "Error: A file must be specified";
   private static final String multipleFilesMsg = "Error: Only one file can be specified";
+  private static final String invalidTargetMsg = "Error: Invalid compilation target invalid";
+  private static final String nameMsg =
+      "Error: Argument 'path' must contain '{name}' when several files are compiled";
+  private static final String targetMsg =
+      "Error: Argument 'path' must contain '{target}' when several targets are compiled";
 
   private void assertFails(String test, String args[], String startMsg) {
     try {
@@ -192,11 +199,89 @@ public class TestMain extends MalTest {
 
   @Test
   public void testMultipleFiles() {
-    // Only multiple files
-    assertMultipleFiles(new String[] {"file1", "file2"});
-    // Multiple files and valid option
+    // Multiple files and a phase
+    assertMultipleFiles(new String[] {"-l", "file1", "file2"});
     assertMultipleFiles(new String[] {"-p", "file1", "file2"});
     assertMultipleFiles(new String[] {"--parser", "file1", "file2"});
+    assertMultipleFiles(new String[] {"--analyzer", "file1", "file2"});
+    // Multiple files or targets writing to the same path
+    assertFails("Multiple files", new String[] {"file1", "file2"}, nameMsg);
+    assertFails(
+        "Multiple files", new String[] {"--args", "path=out", "file1", "file2"}, nameMsg);
+    assertFails(
+        "Multiple targets",
+        new String[] {"-t", "malc,d3", "--args", "path=out", "file"},
+        targetMsg);
+    assertFails(
+        "Multiple targets",
+        new String[] {"-t", "malc", "-t", "d3", "--args", "path=out/{name}", "file"},
+        targetMsg);
+  }
+
+  @Test
+  public void testCompileAll() {
+    var dir = getNewTmpDir("test-compile-all");
+    var files =
+        new String[] {
+          "all-features/all-features.mal",
+          "lang-converter/reverse.mal",
+          "vehiclelang/vehicleLang.mal"
+        };
+    var args = new String[files.length + 4];
+    args[0] = "--target";
+    args[1] = "malc";
+    args[2] = "--args";
+    args[3] = String.format("path=%s%s{name}%s", dir, File.separator, LangSerializer.SUFFIX);
+    for (int i = 0; i < files.length; i++) {
+      args[i + 4] = assertGetFileClassPath(files[i]).getAbsolutePath();
+    }
+    try {
+      resetTestSystem();
+      Main.main(args);
+    } catch (ExitSecurityException e) {
+      fail(String.format("Compilation exited with status code %d%n%s", e.getStatus(), getErr()));
+    }
+    assertEmptyOut();
+    for (var name : new String[] {"all-features", "reverse", "vehicleLang"}) {
+      assertTrue(new File(dir, name + LangSerializer.SUFFIX).isFile());
+    }
+  }
+
+  @Test
+  public void testCompileAllFailure() {
+    var dir = getNewTmpDir("test-compile-all-failure");
+    var reverse = assertGetFileClassPath("lang-converter/reverse.mal").getAbsolutePath();
+    var bad = assertGetFileClassPath("parser/bad-asset1.mal").getAbsolutePath();
+    var complex = assertGetFileClassPath("analyzer/complex.mal").getAbsolutePath();
+    var path = String.format("path=%s%s{name}%s", dir, File.separator, LangSerializer.SUFFIX);
+    try {
+      resetTestSystem();
+      Main.main(new String[] {"-t", "malc", "--args", path, reverse, bad, complex});
+      fail("Compilation should exit with status code 1");
+    } catch (ExitSecurityException e) {
+      assertEquals(1, e.getStatus());
+    }
+    assertEmptyOut();
+    // The messages of each file are printed together, in the order of the files
+    String[] expected = {
+      String.format("[MAIN ERROR] %s: There were syntax errors", bad),
+      "[PARSER ERROR] <bad-asset1.mal:2:3> expected 'abstract', 'asset', or '}', found identifier",
+      "[ANALYZER WARNING] <complex.mal:69:3> Association 'Computer [studentComputer] <-- Use -->"
+          + " Student [student]' is never used",
+      "[ANALYZER WARNING] <complex.mal:70:3> Association 'Computer [teacherComputer] <-- Use -->"
+          + " Teacher [teacher]' is never used",
+      "[MAIN ERROR] 1 of 3 files failed to compile",
+      ""
+    };
+    assertErrLines(expected);
+    assertTrue(new File(dir, "reverse" + LangSerializer.SUFFIX).isFile());
+    assertTrue(new File(dir, "complex" + LangSerializer.SUFFIX).isFile());
+  }
+
+  @Test
+  public void testInvalidTarget() {
+    assertFails("Invalid target", new String[] {"-t", "invalid", "file"}, invalidTargetMsg);
+    assertFails("Invalid target", new String[] {"-t", "malc,invalid", "file"}, invalidTargetMsg);
   }
 
   private void assertPhase(String phase, String[] args, String outFile, String errFile) {
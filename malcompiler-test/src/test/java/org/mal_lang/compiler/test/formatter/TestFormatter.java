@@ -20,7 +20,13 @@ import static org.junit.jupiter.api.Assertions.fail;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
 import org.mal_lang.compiler.lib.CompilerException;
 import org.mal_lang.compiler.test.MalTest;
 import org.mal_lang.formatter.Formatter;
@@ -92,6 +98,88 @@ public class TestFormatter extends MalTest {
     outputEqual("formatter/margin.mal", "formatter/margin30.ans", 30);
   }
 
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  public void testDeeplyNested() {
+    outputEqual("formatter/nested.mal", "formatter/nested.ans", 100);
+  }
+
+  @Test
+  public void testInMemory() {
+    String expected = assertReadFileClassPath("formatter/readable.ans");
+    String input = assertReadFileClassPath("formatter/readable.mal");
+    try {
+      assertEquals(
+          expected,
+          Formatter.format(input.getBytes(StandardCharsets.UTF_8), "readable.mal", 100));
+    } catch (CompilerException e) {
+      fail(e.getMessage());
+    }
+    assertEmptyOut();
+  }
+
+  @Test
+  public void testFormatAll() throws IOException {
+    var dir = new File(getNewTmpDir("formatAll"));
+    var formatted = new File(dir, "formatted.mal");
+    var unformatted = new File(dir, "sub/unformatted.mal");
+    unformatted.getParentFile().mkdir();
+    Files.writeString(formatted.toPath(), assertReadFileClassPath("formatter/readable.ans"));
+    Files.writeString(unformatted.toPath(), assertReadFileClassPath("formatter/readable.mal"));
+    Files.writeString(new File(dir, "other.txt").toPath(), "Not MAL");
+    try {
+      Formatter.formatAll(List.of(dir), Map.of("check", "true"));
+      fail("formatAll should fail when a file is not formatted");
+    } catch (CompilerException e) {
+      assertEquals("1 of 2 files are not formatted", e.getMessage());
+    }
+    assertOutLines(new String[] {unformatted.getPath(), ""});
+    resetTestSystem();
+    try {
+      assertEquals(
+          List.of(unformatted), Formatter.formatAll(List.of(dir), Map.of("inplace", "true")));
+      assertEquals(
+          assertReadFileClassPath("formatter/readable.ans"),
+          Files.readString(unformatted.toPath()));
+      assertEquals(List.of(), Formatter.formatAll(List.of(dir), Map.of("check", "true")));
+    } catch (CompilerException e) {
+      fail(e.getMessage());
+    }
+    assertOutLines(new String[] {unformatted.getPath(), ""});
+    assertEmptyErr();
+  }
+
+  @Test
+  public void testFormatAllInvalid() throws IOException {
+    var dir = new File(getNewTmpDir("formatAllInvalid"));
+    var bad1 = new File(dir, "bad1.mal");
+    var bad2 = new File(dir, "bad2.mal");
+    Files.writeString(bad1.toPath(), assertReadFileClassPath("parser/bad-asset1.mal"));
+    Files.writeString(bad2.toPath(), assertReadFileClassPath("lexer/unterminated_string.txt"));
+    try {
+      Formatter.formatAll(List.of(bad2, bad1), Map.of());
+      fail("formatAll should fail when a file is not valid");
+    } catch (CompilerException e) {
+      assertEquals("2 of 2 files could not be formatted", e.getMessage());
+    }
+    assertEmptyOut();
+    // The errors of each file are printed together, in the order of the files
+    String[] expected = {
+      String.format("[FORMATTER ERROR] %s could not be formatted", bad2.getPath()),
+      String.format(
+          "[LEXER ERROR] <%s:1:1> Unterminated string starting at <%s:1:1>",
+          bad2.getPath(), bad2.getPath()),
+      "[FORMATTER ERROR] Code to be formatted must be syntactically valid",
+      String.format("[FORMATTER ERROR] %s could not be formatted", bad1.getPath()),
+      String.format(
+          "[PARSER ERROR] <%s:2:3> expected 'abstract', 'asset', or '}', found identifier",
+          bad1.getPath()),
+      "[FORMATTER ERROR] Code to be formatted must be syntactically valid",
+      ""
+    };
+    assertErrLines(expected);
+  }
+
   @Test
   public void testComplexFormat() {
     formats("analyzer/complex.mal");
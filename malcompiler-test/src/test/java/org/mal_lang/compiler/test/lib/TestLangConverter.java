@@ -16,6 +16,10 @@
 package org.mal_lang.compiler.test.lib;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mal_lang.compiler.test.lib.AssertLang.assertGetLangAsset;
 import static org.mal_lang.compiler.test.lib.AssertLang.assertGetLangAttackStep;
 import static org.mal_lang.compiler.test.lib.AssertLang.assertGetLangClassPath;
@@ -1183,4 +1187,32 @@ public class TestLangConverter extends MalTest {
     assertLangLink(
         lang, "SecretFolder", "subFolder", "SecretFolder", "folder", 8, "Contain", new HashMap<>());
   }
+
+  @Test
+  public void testInheritance() {
+    var lang = assertGetLangClassPath("all-features/all-features.mal");
+    var a1 = lang.getAsset("A1");
+    var a2 = lang.getAsset("A2");
+    var a3 = lang.getAsset("A3");
+    var a7 = lang.getAsset("A7");
+    assertTrue(a7.isSubTypeOf(a7));
+    assertTrue(a7.isSubTypeOf(a3));
+    assertTrue(a7.isSubTypeOf(a1));
+    assertFalse(a1.isSubTypeOf(a7));
+    assertFalse(a7.isSubTypeOf(a2));
+    assertFalse(a7.isSubTypeOf(lang.getAsset("A4")));
+    assertSame(a1.getField("a4"), a7.getField("a4"));
+    assertSame(a1.getAttackStep("a1Attack2"), a7.getAttackStep("a1Attack2"));
+    assertSame(a2.getAttackStep("a1Attack2"), a2.getAttackSteps().get("a1Attack2"));
+    assertFalse(a2.getAttackStep("a1Attack1").hasInheritedTag("hidden"));
+    // Changes to an asset are seen by its subassets
+    a1.getAttackStep("a1Attack1").addTag("hidden");
+    assertTrue(a2.getAttackStep("a1Attack1").hasInheritedTag("hidden"));
+    a1.removeAttackStep(a1.getAttackStep("a1Exist1"));
+    assertNull(a7.getAttackStep("a1Exist1"));
+    a7.setSuperAsset(a2);
+    assertTrue(a7.isSubTypeOf(a2));
+    assertFalse(a7.isSubTypeOf(a3));
+    assertSame(a2.getAttackStep("a1Attack1"), a7.getAttackStep("a1Attack1"));
+  }
 }
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2019 Foreseeti AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mal_lang.compiler.test.lib;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mal_lang.compiler.test.lib.AssertLang.assertGetLangClassPath;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.mal_lang.compiler.lib.Lang;
+import org.mal_lang.compiler.lib.LangSerializer;
+import org.mal_lang.compiler.test.MalTest;
+
+public class TestLangSerializer extends MalTest {
+  @Test
+  public void testRoundTrip() throws Exception {
+    var dir = getNewTmpDir("test-lang-serializer");
+    for (var filename :
+        List.of(
+            "all-features/all-features.mal",
+            "lang-converter/reverse.mal",
+            "vehiclelang/vehicleLang.mal")) {
+      var lang = assertGetLangClassPath(filename);
+      var bytes = LangSerializer.serialize(lang);
+      var file = new File(dir, new File(filename).getName() + LangSerializer.SUFFIX);
+      LangSerializer.write(lang, file);
+      var loaded = LangSerializer.read(file);
+      // Everything is stored by index, so equal bytes means equal languages
+      assertArrayEquals(bytes, LangSerializer.serialize(loaded));
+      assertEquals(lang.getDefines(), loaded.getDefines());
+      assertEquals(lang.getAssets().keySet(), loaded.getAssets().keySet());
+      for (var asset : loaded.getAssets().values()) {
+        assertSame(asset, asset.getCategory().getAsset(asset.getName()));
+        for (var attackStep : asset.getAttackSteps().values()) {
+          assertSame(asset, attackStep.getAsset());
+        }
+      }
+      for (var link : loaded.getLinks()) {
+        assertSame(link, link.getLeftField().getLink());
+        assertSame(link.getRightField(), link.getLeftField().getTarget());
+      }
+    }
+  }
+
+  @Test
+  public void testInvalid() {
+    assertThrows(
+        IOException.class, () -> LangSerializer.deserialize(ByteBuffer.wrap(new byte[] {1, 2, 3})));
+    var bytes = LangSerializer.serialize(assertGetLangClassPath("lang-converter/reverse.mal"));
+    assertThrows(
+        IOException.class,
+        () -> LangSerializer.deserialize(ByteBuffer.wrap(bytes, 0, bytes.length / 2)));
+    // A valid header followed by a huge string length fails without allocating it
+    var header = ByteBuffer.allocate(16).put(bytes, 0, 8).putInt(1).putInt(Integer.MAX_VALUE);
+    var e = assertThrows(IOException.class, () -> LangSerializer.deserialize(header.flip()));
+    assertEquals("Truncated or corrupt .malc file", e.getMessage());
+  }
+}
@@ -16,6 +16,7 @@
 package org.mal_lang.compiler.test.lib;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.mal_lang.compiler.test.lib.AssertToken.assertGetLexerClassPath;
@@ -184,4 +185,21 @@ public class TestLexer extends MalTest {
         new Position("bad-unicode-2.txt", 1, 1),
         "Unexpected token 0xC3");
   }
+
+  @Test
+  public void testLexerInMemory() throws IOException, CompilerException {
+    var expected = assertGetLexerClassPath("lexer/unicode.txt").tokenize();
+    var input = assertReadFileClassPath("lexer/unicode.txt");
+    var tokens = new Lexer(input, "unicode.txt").tokenize();
+    assertEquals(expected.size(), tokens.size());
+    for (int i = 0; i < tokens.size(); i++) {
+      assertEquals(expected.get(i).toString(), tokens.get(i).toString());
+    }
+    assertTrue(Lexer.syntacticallyEqual(new Lexer(tokens), new Lexer(input, "other.txt")));
+    var replay = new Lexer(tokens);
+    for (var token : tokens) {
+      assertSame(token, replay.next());
+    }
+    assertEquals(TokenType.EOF, replay.next().type);
+  }
 }
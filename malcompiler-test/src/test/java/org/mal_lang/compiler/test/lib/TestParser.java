@@ -22,6 +22,7 @@ import static org.mal_lang.compiler.test.lib.AssertAST.assertDefine;
 import static org.mal_lang.compiler.test.lib.AssertAST.assertEmptyAST;
 import static org.mal_lang.compiler.test.lib.AssertAST.assertGetASTClassPath;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -29,6 +30,8 @@ import java.util.Optional;
 import org.junit.jupiter.api.Test;
 import org.mal_lang.compiler.lib.AST;
 import org.mal_lang.compiler.lib.AST.ID;
+import org.mal_lang.compiler.lib.ASTCache;
+import org.mal_lang.compiler.lib.Parser;
 import org.mal_lang.compiler.lib.Position;
 import org.mal_lang.compiler.test.MalTest;
 
@@ -1275,4 +1278,26 @@ public class TestParser extends MalTest {
     String ans = assertReadFileClassPath("parser/to-string.ans");
     assertEquals(ans, ast.toString());
   }
+
+  @Test
+  public void testCache() throws Exception {
+    var cache = new ASTCache(new File(getNewTmpDir("test-ast-cache")));
+    for (var filename :
+        List.of("parser/include.mal", "parser/attacksteps.mal", "parser/to-string.mal")) {
+      var ans = assertGetASTClassPath(filename).toString();
+      var file = getFileClassPath(filename);
+      // The first parse fills the cache and the second reads from it
+      assertEquals(ans, Parser.parse(file, cache).toString());
+      assertEquals(ans, Parser.parse(file, cache).toString());
+    }
+  }
+
+  @Test
+  public void testMemoryCache() throws Exception {
+    var cache = new ASTCache();
+    var ans = assertGetASTClassPath("parser/include.mal").toString();
+    var file = getFileClassPath("parser/include.mal");
+    assertEquals(ans, Parser.parse(file, cache).toString());
+    assertEquals(ans, Parser.parse(file, cache).toString());
+  }
 }
@@ -129,6 +129,11 @@ public class TestParserFail extends MalTest {
         "parser/bad-include3.mal",
         new Position(SUBDIR_BAD_INCLUDED1_MAL, 1, 1),
         "expected 'category', 'associations', 'include', or '#', found identifier");
+    // Errors of files included after the first bad file are not reported
+    assertSyntaxError(
+        "parser/bad-include4.mal",
+        new Position(SUBDIR_BAD_INCLUDED1_MAL, 1, 1),
+        "expected 'category', 'associations', 'include', or '#', found identifier");
   }
 
   @Test
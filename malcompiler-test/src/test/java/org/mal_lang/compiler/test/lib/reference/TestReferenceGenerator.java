@@ -15,11 +15,20 @@
  */
 package org.mal_lang.compiler.test.lib.reference;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mal_lang.compiler.test.lib.AssertLang.assertGetLangClassPath;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,6 +36,7 @@ import java.util.Set;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.mal_lang.compiler.lib.CompilerException;
 import org.mal_lang.compiler.lib.Lang;
 import org.mal_lang.compiler.lib.reference.Generator;
 import org.mal_lang.compiler.test.lib.JavaGeneratorTest;
@@ -106,15 +116,21 @@ public class TestReferenceGenerator extends JavaGeneratorTest {
     assertTrue(coreDir.exists(), String.format("%s does not exist", corePath));
     assertTrue(coreDir.isDirectory(), String.format("%s is not a directory", corePath));
     var coreFiles = coreDir.listFiles();
-    assertEquals(7, coreFiles.length, String.format("%s should contain 7 files", corePath));
+    assertEquals(13, coreFiles.length, String.format("%s should contain 13 files", corePath));
     var coreFilesList =
         List.of(
             "Asset.java",
+            "AttackGraph.java",
             "Attacker.java",
             "AttackStep.java",
             "AttackStepMax.java",
             "AttackStepMin.java",
-            "Defense.java");
+            "AttackStepQueue.java",
+            "Defense.java",
+            "ModelContext.java",
+            "MonteCarlo.java",
+            "Registry.java",
+            "Simulation.java");
     var coreFilesMap = new HashMap<String, Boolean>();
     for (var coreFile : coreFilesList) {
       coreFilesMap.put(coreFile, Boolean.FALSE);
@@ -282,6 +298,85 @@ public class TestReferenceGenerator extends JavaGeneratorTest {
     assertEmptyErr();
   }
 
+  @Test
+  public void testIncremental() {
+    var outDir = getNewTmpDir("test-reference-generator");
+    var args = Map.of("path", outDir, "incremental", "true");
+    var lang = assertGetLangClassPath("all-features/all-features.mal");
+    resetTestSystem();
+    assertGeneratorOK(lang, args);
+    var langDir = new File(outDir, "lang");
+    var timestamp = 1000000000000L;
+    for (var file : langDir.listFiles()) {
+      assertTrue(file.setLastModified(timestamp));
+    }
+    // Test that unchanged files are not rewritten
+    resetTestSystem();
+    assertGeneratorOK(lang, args);
+    for (var asset : lang.getAssets().values()) {
+      var assetFile = new File(langDir, String.format("%s.java", asset.getName()));
+      assertEquals(
+          timestamp,
+          assetFile.lastModified(),
+          String.format("%s was rewritten", assetFile.getPath()));
+    }
+    // Test that files of removed assets are deleted
+    resetTestSystem();
+    assertGeneratorOK(emptyLang, args);
+    assertFalse(langDir.exists(), String.format("%s exists", langDir.getPath()));
+    assertAttackerProfilePresent(outDir);
+    assertCorePresent(outDir);
+  }
+
+  @Test
+  public void testCompile() {
+    var lang = assertGetLangClassPath("all-features/all-features.mal");
+    resetTestSystem();
+    try {
+      var classLoader =
+          Generator.compile(lang, Map.of("package", "lang"), getClass().getClassLoader());
+      assertEmptyOut();
+      assertEmptyErr();
+      var assetClass = classLoader.loadClass("core.Asset");
+      assertSame(classLoader, assetClass.getClassLoader());
+      for (var asset : lang.getAssets().values()) {
+        var cls = classLoader.loadClass(String.format("lang.%s", asset.getName()));
+        assertEquals(classLoader, cls.getClassLoader());
+        assertTrue(assetClass.isAssignableFrom(cls));
+      }
+      assertNotNull(classLoader.getResourceAsStream("attackerProfile.ttc"));
+      assertNotNull(classLoader.getResource("attackerProfile.ttc"));
+      try (var in = classLoader.getResource("attackerProfile.ttc").openStream()) {
+        assertTrue(in.readAllBytes().length > 0);
+      }
+    } catch (ClassNotFoundException | IOException | CompilerException e) {
+      failPrintOutErr(e.getMessage());
+    }
+  }
+
+  @Test
+  public void testCompileOnClassPath() {
+    // The test module generates vehicleLang, and the core package, into package 'vehicle'
+    var lang = assertGetLangClassPath("vehiclelang/vehicleLang.mal");
+    resetTestSystem();
+    try {
+      var parent = getClass().getClassLoader();
+      var classLoader = Generator.compile(lang, Map.of("package", "vehicle"), parent);
+      assertEmptyOut();
+      assertEmptyErr();
+      var assetClass = classLoader.loadClass("core.Asset");
+      assertSame(classLoader, assetClass.getClassLoader());
+      assertNotSame(parent.loadClass("core.Asset"), assetClass);
+      for (var asset : lang.getAssets().values()) {
+        var cls = classLoader.loadClass(String.format("vehicle.%s", asset.getName()));
+        assertSame(classLoader, cls.getClassLoader());
+        assertTrue(assetClass.isAssignableFrom(cls));
+      }
+    } catch (ClassNotFoundException | IOException | CompilerException e) {
+      failPrintOutErr(e.getMessage());
+    }
+  }
+
   @Test
   public void testBadLang() {
     String[] expectedErrors = {
@@ -337,6 +432,30 @@ public class TestReferenceGenerator extends JavaGeneratorTest {
     assertLangGenerated("generator/nested.mal");
   }
 
+  @Test
+  public void testDeterministic() {
+    // Names of locals must not depend on what the worker threads generated before
+    var lang = assertGetLangClassPath("generator/nested.mal");
+    var otherLang = assertGetLangClassPath("all-features/all-features.mal");
+    var outDir1 = getNewTmpDir("test-reference-generator");
+    var outDir2 = getNewTmpDir("test-reference-generator");
+    resetTestSystem();
+    assertGeneratorOK(lang, Map.of("path", outDir1));
+    assertGeneratorOK(otherLang, Map.of("path", getNewTmpDir("test-reference-generator")));
+    assertGeneratorOK(lang, Map.of("path", outDir2));
+    for (var asset : lang.getAssets().values()) {
+      var path = String.format("lang/%s.java", asset.getName());
+      try {
+        assertArrayEquals(
+            Files.readAllBytes(Path.of(outDir1, path)),
+            Files.readAllBytes(Path.of(outDir2, path)),
+            String.format("%s differs between runs", path));
+      } catch (IOException e) {
+        fail(e.getMessage());
+      }
+    }
+  }
+
   @Test
   public void testSteps() {
     assertLangGenerated("generator/steps.mal");
@@ -1,9 +1,18 @@
 package org.mal_lang.compiler.test.vehiclelang;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 import core.Asset;
+import core.AttackGraph;
 import core.AttackStep;
 import core.Attacker;
 import core.Defense;
+import core.ModelContext;
+import core.MonteCarlo;
+import core.Simulation;
+import java.util.concurrent.CompletableFuture;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.mal_lang.compiler.test.MalTest;
@@ -70,6 +79,116 @@ public class CoreEcuTest extends MalTest {
     ecu.gainLINAccessFromCAN.assertCompromisedInstantaneously();
   }
 
+  @Test
+  public void testRepeatedAccessEcuAttacks() {
+    // Attacking the same ECU model again after changing a defense.
+    ECU ecu = new ECU("ECU8", false, true); // Enabled only message confliction protection.
+
+    Attacker attacker = new Attacker();
+    attacker.addAttackPoint(ecu.access);
+    attacker.attack();
+    ecu.changeOperationMode.assertCompromisedInstantaneously();
+
+    attacker.reset();
+    assertEquals(AttackStep.infinity, ecu.changeOperationMode.ttc());
+
+    ecu.operationModeProtection.defaultValue = true;
+    attacker.attack();
+    ecu.access.assertCompromisedInstantaneously();
+    ecu.changeOperationMode.assertUncompromised();
+    ecu.gainLINAccessFromCAN.assertCompromisedInstantaneously();
+
+    ecu.operationModeProtection.defaultValue = false;
+    attacker.attack();
+    ecu.changeOperationMode.assertCompromisedInstantaneously();
+    ecu.bypassMessageConfliction.assertCompromisedInstantaneously();
+  }
+
+  @Test
+  public void testConnectEcuAttacksWithoutParents() {
+    // Testing ECU attacks on connect without recording the parents of the attack steps.
+    ModelContext context = new ModelContext();
+    context.recordParents = false;
+    context.run(
+        () -> {
+          ECU ecu = new ECU("ECU9", false, true); // Enabled only message confliction protection.
+
+          Attacker attacker = new Attacker();
+          attacker.addAttackPoint(ecu.connect);
+          attacker.attack();
+
+          ecu.attemptChangeOperationMode.assertCompromisedWithEffort();
+          ecu.changeOperationMode.assertUncompromised();
+          ecu.access.assertUncompromised();
+          assertTrue(ecu.attemptChangeOperationMode.visitedParents.isEmpty());
+        });
+  }
+
+  @Test
+  public void testSampleConnectEcuAttacks() {
+    // Sampling ECU attacks on connect with some defenses enabled.
+    ECU ecu = new ECU("ECU5", false, true); // Enabled only message confliction protection.
+
+    Attacker attacker = new Attacker();
+    attacker.addAttackPoint(ecu.connect);
+    MonteCarlo.Result result = attacker.sample(200, 42);
+    MonteCarlo.Result again = attacker.sample(200, 42);
+
+    assertEquals(200, result.samples());
+    assertEquals(1.0, result.probabilityOfCompromise(ecu.attemptChangeOperationMode));
+    assertEquals(0.0, result.probabilityOfCompromise(ecu.changeOperationMode));
+    assertEquals(AttackStep.infinity, result.quantile(ecu.changeOperationMode, 0.5));
+    double median = result.quantile(ecu.attemptChangeOperationMode, 0.5);
+    assertTrue(result.quantile(ecu.attemptChangeOperationMode, 0) < median);
+    assertTrue(median < result.quantile(ecu.attemptChangeOperationMode, 1));
+    assertEquals(median, again.quantile(ecu.attemptChangeOperationMode, 0.5));
+  }
+
+  @Test
+  public void testSimulateFrozenEcuAttacks() {
+    // Simulating ECU attacks on access repeatedly with some defenses enabled.
+    ECU ecu = new ECU("ECU7", false, true); // Enabled only message confliction protection.
+
+    Attacker attacker = new Attacker();
+    attacker.addAttackPoint(ecu.access);
+    AttackGraph graph = attacker.freeze();
+    Simulation simulation = new Simulation(graph);
+    simulation.run();
+    double ttc = simulation.ttc(ecu.changeOperationMode);
+    simulation.run();
+
+    assertEquals(ttc, simulation.ttc(ecu.changeOperationMode));
+    assertEquals(AttackStep.infinity, simulation.ttc(ecu.attemptChangeOperationMode));
+    simulation.writeBack();
+    ecu.changeOperationMode.assertCompromisedInstantaneously();
+    ecu.attemptChangeOperationMode.assertUncompromised();
+    ecu.bypassMessageConfliction.assertCompromisedInstantaneously();
+    ecu.gainLINAccessFromCAN.assertCompromisedInstantaneously();
+  }
+
+  @Test
+  public void testConcurrentModelContexts() {
+    // Attacking two ECU models concurrently, each in its own model context.
+    CompletableFuture<Double> enabled =
+        CompletableFuture.supplyAsync(() -> new ModelContext().call(() -> attackEcu(true)));
+    CompletableFuture<Double> disabled =
+        CompletableFuture.supplyAsync(() -> new ModelContext().call(() -> attackEcu(false)));
+
+    assertEquals(AttackStep.infinity, enabled.join());
+    assertTrue(disabled.join() < AttackStep.infinity);
+    assertTrue(Asset.allAssets.isEmpty());
+    assertFalse(AttackStep.allAttackSteps.iterator().hasNext());
+  }
+
+  private static double attackEcu(boolean operationModeProtection) {
+    ECU ecu = new ECU("ECU6", operationModeProtection, true);
+    Attacker attacker = new Attacker();
+    attacker.addAttackPoint(ecu.access);
+    attacker.attack();
+    assertEquals(1, Asset.allAssets.size());
+    return ecu.changeOperationMode.ttc;
+  }
+
   @AfterEach
   public void deleteModel() {
     Asset.allAssets.clear();